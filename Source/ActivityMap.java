@@ -0,0 +1,184 @@
+/* Counts of the subcells in state 1 and of the transitions which have taken place, for square
+ * blocks of cells of every power of two size (a mipmap), used to draw a cell space zoomed out
+ * too far to draw its cells. Blocks of level l are 2^l cells across, and each block of level l+1
+ * counts the four blocks of level l it covers, up to a level with a single block covering the
+ * cell space. Only the levels from BASE up are kept: the subcells of a smaller block are counted
+ * when needed straight from the bitplanes (see count), as a few bitCounts of one word per row.
+ * The counts are kept up to date as transitions take place (by fired) or subcells are changed
+ * (by recount), which counts one block of the BASE level again and changes one block of every
+ * level above it, rather than being counted again.
+ *
+ * Blocks up to level NARROW hold at most 4*4^NARROW subcells, so their counts are kept as chars
+ * (2 bytes per block); the few larger blocks use ints. Transition counts are only ever compared
+ * with what they were at the last paint, so they are allowed to wrap around */
+public class ActivityMap {
+
+	/* Lowest level kept, and the highest whose counts are kept as chars */
+	static final int BASE=3;
+	static final int NARROW=6;
+
+	/* Cell space being counted */
+	final CellGrid grid;
+
+	/* Number of levels (counting those below BASE), and the number of blocks across and down
+	 * each level */
+	final int levels;
+	final int[] widths;
+	final int[] heights;
+
+	/* Subcells in state 1 and transitions which have taken place in each block of each level,
+	 * indexed by level, then blockY*widths[level]+blockX - levels BASE to NARROW in the narrow
+	 * arrays, levels above in the wide ones (the other entries are null) */
+	final char[][] narrowStates;
+	final char[][] narrowTransitions;
+	final int[][] wideStates;
+	final int[][] wideTransitions;
+
+	/* Constructor - counts the subcells of the given grid (which should not change meanwhile),
+	 * with no transitions so far */
+	public ActivityMap(CellGrid grid){
+		this.grid=grid;
+		int count=1;
+		while((grid.width-1)>>(count-1)>0 || (grid.height-1)>>(count-1)>0){
+			count++;
+		}
+		levels=Math.max(count,BASE+1);
+		widths=new int[levels];
+		heights=new int[levels];
+		narrowStates=new char[levels][];
+		narrowTransitions=new char[levels][];
+		wideStates=new int[levels][];
+		wideTransitions=new int[levels][];
+		for(int level=0;level<levels;level++){
+			widths[level]=((grid.width-1)>>level)+1;
+			heights[level]=((grid.height-1)>>level)+1;
+			if(level<BASE){
+				continue;
+			}
+			long blocks=(long)widths[level]*heights[level];
+			if(blocks>Integer.MAX_VALUE-8){
+				throw new IllegalArgumentException("cell space of "+grid.width+" x "+grid.height+" cells is too large to count");
+			}
+			if(level<=NARROW){
+				narrowStates[level]=new char[(int)blocks];
+				narrowTransitions[level]=new char[(int)blocks];
+			}
+			else{
+				wideStates[level]=new int[(int)blocks];
+				wideTransitions[level]=new int[(int)blocks];
+			}
+		}
+
+		/* Count every block of the BASE level, then add each level up from the one below */
+		for(int y=0;y<heights[BASE];y++){
+			for(int x=0;x<widths[BASE];x++){
+				narrowStates[BASE][y*widths[BASE]+x]=(char)count(grid,BASE,x,y);
+			}
+		}
+		for(int level=BASE+1;level<levels;level++){
+			for(int y=0;y<heights[level-1];y++){
+				for(int x=0;x<widths[level-1];x++){
+					add(level,(y>>1)*widths[level]+(x>>1),states(level-1,y*widths[level-1]+x));
+				}
+			}
+		}
+	}
+
+	/* Counts a transition at the cell y*width+x, which also changes the subcells of its four
+	 * neighbours facing it */
+	void fired(long cell){
+		int x=(int)(cell%grid.width);
+		int y=(int)(cell/grid.width);
+		for(int level=BASE;level<levels;level++){
+			int block=(y>>level)*widths[level]+(x>>level);
+			if(level<=NARROW){
+				narrowTransitions[level][block]++;
+			}
+			else{
+				wideTransitions[level][block]++;
+			}
+		}
+
+		/* Count the block again, and the blocks of any neighbours in other blocks */
+		recount(x,y);
+		if(y>0 && (y-1)>>BASE!=y>>BASE){
+			recount(x,y-1);
+		}
+		if(y<grid.height-1 && (y+1)>>BASE!=y>>BASE){
+			recount(x,y+1);
+		}
+		if(x>0 && (x-1)>>BASE!=x>>BASE){
+			recount(x-1,y);
+		}
+		if(x<grid.width-1 && (x+1)>>BASE!=x>>BASE){
+			recount(x+1,y);
+		}
+	}
+
+	/* Counts the subcells of the block of the BASE level holding the cell x,y again, after some
+	 * of them have been changed */
+	void recount(int x, int y){
+		int blockX=x>>BASE;
+		int blockY=y>>BASE;
+		int block=blockY*widths[BASE]+blockX;
+		int change=count(grid,BASE,blockX,blockY)-narrowStates[BASE][block];
+		if(change!=0){
+			for(int level=BASE;level<levels;level++){
+				add(level,(y>>level)*widths[level]+(x>>level),change);
+			}
+		}
+	}
+
+	/* Number of subcells in state 1 in the given block of the given level (from BASE up) */
+	int states(int level, int block){
+		return level<=NARROW ? narrowStates[level][block] : wideStates[level][block];
+	}
+
+	/* Number of transitions (wrapping around) which have taken place in the given block of the
+	 * given level (from BASE up) */
+	int transitions(int level, int block){
+		return level<=NARROW ? narrowTransitions[level][block] : wideTransitions[level][block];
+	}
+
+	/* Copy of the transition counts of every block of the given level */
+	int[] transitions(int level){
+		int[] copy=new int[widths[level]*heights[level]];
+		for(int block=0;block<copy.length;block++){
+			copy[block]=transitions(level,block);
+		}
+		return copy;
+	}
+
+	/* Adds change to the count of subcells in state 1 of a block of the given level */
+	private void add(int level, int block, int change){
+		if(level<=NARROW){
+			narrowStates[level][block]+=change;
+		}
+		else{
+			wideStates[level][block]+=change;
+		}
+	}
+
+	/* Counts the subcells in state 1 of the block x,y of the given level (at most NARROW, so a
+	 * row of the block lies within one word of each bitplane) straight from the bitplanes */
+	static int count(CellGrid grid, int level, int x, int y){
+		int size=1<<level;
+		int left=x<<level;
+		long mask=(size==64 ? -1L : (1L<<size)-1)<<(left&63);
+		int count=0;
+		int bottom=Math.min(grid.height,(y+1)<<level);
+		for(int row=y<<level;row<bottom;row++){
+			int word=grid.word(left,row);
+			count+=Long.bitCount(grid.top[word]&mask)+Long.bitCount(grid.bottom[word]&mask)
+					+Long.bitCount(grid.left[word]&mask)+Long.bitCount(grid.right[word]&mask);
+		}
+		return count;
+	}
+
+	/* Number of cells in the block x,y of the given level of a grid (less than the full size of a
+	 * block on the right and bottom edges of the cell space) */
+	static int cells(CellGrid grid, int level, int x, int y){
+		int size=1<<level;
+		return Math.min(size,grid.width-(x<<level))*Math.min(size,grid.height-(y<<level));
+	}
+}
@@ -0,0 +1,100 @@
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/* Checks that attempting a transition allocates nothing on the heap, using the JVM's count of the
+ * bytes each thread has allocated. For every STCA, a random cell space is given a warm-up run of
+ * transition attempts (so the JIT compiler has compiled the transition path), then the bytes the
+ * thread allocates during a long run of ApplyRule.isEnabled and ApplyRule.executeTransition at
+ * random cells are counted. Any bytes beyond those counted by an empty run of the same length (the
+ * cost of the counting itself) are reported, and make the program exit with status 1. Usage:
+ *
+ *   java AllocationCheck [attempts]
+ *
+ * with 10000000 attempts per STCA by default */
+public class AllocationCheck {
+
+	/* Size of the cell space the transitions are attempted in */
+	static final int WIDTH=256;
+	static final int HEIGHT=256;
+
+	/* Attempts made before counting, to give the JIT compiler time to compile the path */
+	static final int WARM_UP=2000000;
+
+	/* The JVM's counts of allocated bytes */
+	final com.sun.management.ThreadMXBean threads;
+
+	/* Constructor - fails if the JVM cannot count the bytes each thread allocates */
+	public AllocationCheck(){
+		java.lang.management.ThreadMXBean bean=ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean)){
+			throw new UnsupportedOperationException("this JVM cannot count allocated bytes");
+		}
+		threads=(com.sun.management.ThreadMXBean)bean;
+		if(!threads.isThreadAllocatedMemorySupported()){
+			throw new UnsupportedOperationException("this JVM cannot count allocated bytes");
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/* Makes the given number of transition attempts at random interior cells of the grid (or none,
+	 * if attempt is false, only drawing the random numbers) and returns the bytes the thread
+	 * allocated meanwhile. Cells which become stuck are refilled now and then so transitions keep
+	 * taking place */
+	long attempts(CellGrid grid, SplittableRandom random, int count, boolean attempt){
+		long id=Thread.currentThread().getId();
+		long before=threads.getThreadAllocatedBytes(id);
+		for(int i=0;i<count;i++){
+			int x=1+random.nextInt(WIDTH-2);
+			int y=1+random.nextInt(HEIGHT-2);
+			if(attempt && ApplyRule.isEnabled(x,y,grid)){
+				ApplyRule.executeTransition(x,y,grid);
+			}
+			else if(attempt && (i&1023)==0){
+				grid.set(x,y,random.nextInt(16));
+			}
+		}
+		return threads.getThreadAllocatedBytes(id)-before;
+	}
+
+	/* Program entry point for the check */
+	public static void main(String[] args){
+		System.setProperty("java.awt.headless","true");
+		if(args.length>1){
+			System.err.println("Usage: java AllocationCheck [attempts]");
+			System.exit(1);
+		}
+		int failures=0;
+		try{
+			int count=args.length>0 ? Integer.parseInt(args[0]) : 10000000;
+			AllocationCheck check=new AllocationCheck();
+			SplittableRandom random=new SplittableRandom(1);
+			for(int automata=0;automata<Rules.rules.length;automata++){
+				GlobalAttributes.automata=automata;
+				CellGrid grid=new CellGrid(WIDTH,HEIGHT);
+				for(int y=1;y<HEIGHT-1;y++){
+					for(int x=1;x<WIDTH-1;x++){
+						grid.set(x,y,random.nextInt(16));
+					}
+				}
+				check.attempts(grid,random,WARM_UP,true);
+				check.attempts(grid,random,WARM_UP,false);
+				long overhead=check.attempts(grid,random,count,false);
+				long allocated=check.attempts(grid,random,count,true)-overhead;
+				System.out.println("Automaton "+automata+": "+Math.max(0,allocated)+" bytes allocated in "+count+" attempts");
+				if(allocated>0){
+					System.out.println("FAILED: automaton "+automata+" allocates while attempting transitions");
+					failures++;
+				}
+			}
+		}
+		catch(Exception e){
+			System.err.println("Check failed to run: "+e);
+			System.exit(1);
+		}
+		if(failures>0){
+			System.out.println(failures+" checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+}
@@ -1,100 +1,30 @@
 /* Stores all STCA rules and also applies rules to a given cell if available */
 public class ApplyRule {
 
-	/* Given a cell and its neighbouring subcells in the form of a list of states of subcells,
-	 * it searches for a rule to apply and returns a new list of states of subcells (simulating
-	 * the application of the rule */
-	static int[] applyRule(int localTop, int localBottom, int localLeft, int localRight, 
-			int neighbourTop, int neighbourBottom, int neighbourLeft, int neighbourRight){
-
-		/* Assign the result cell as simply the input cell until we detect a rule to apply */
-		int newLocalTop=localTop;
-		int newLocalBottom=localBottom;
-		int newLocalLeft=localLeft;
-		int newLocalRight=localRight;
-		int newNeighbourTop=neighbourTop;
-		int newNeighbourBottom=neighbourBottom;
-		int newNeighbourLeft=neighbourLeft;
-		int newNeighbourRight=neighbourRight;
-		int updated=0;
-
-		/* Variables for retrieving the source of the rule (for comparison purposes) */
-		int lup, ldown, lleft, lright, nup, ndown, nleft, nright;
-
-		/* Make note of the STCA we are using and its number of rules */
-		int automata = GlobalAttributes.automata;
-		int noOfRules = (Rules.rules[automata].length-2)/16;
-
-		/* For each rule in the STCA */
-		for(int i=0; i<noOfRules;i++){
-
-			/* Retrieve the states of the left hand side */
-			lup=Rules.rules[automata][i*16+2];
-			ldown=Rules.rules[automata][i*16+3];
-			lleft=Rules.rules[automata][i*16+4];
-			lright=Rules.rules[automata][i*16+5];
-			nup=Rules.rules[automata][i*16+6];
-			ndown=Rules.rules[automata][i*16+7];
-			nleft=Rules.rules[automata][i*16+8];
-			nright=Rules.rules[automata][i*16+9];
-
-			/* If we detect a match between the rule and the inputted cell, then set
-			 * the resulting cell to the right hand side of the rule, and stop searching
-			 * through the rules */
-			if(localTop==lup && localBottom==ldown && localLeft==lleft && localRight==lright
-					&&neighbourTop==nup && neighbourBottom==ndown && neighbourLeft==nleft &&
-					neighbourRight==nright){
-				newLocalTop=Rules.rules[automata][i*16+10];
-				newLocalBottom=Rules.rules[automata][i*16+11];
-				newLocalLeft=Rules.rules[automata][i*16+12];
-				newLocalRight=Rules.rules[automata][i*16+13];
-				newNeighbourTop=Rules.rules[automata][i*16+14];
-				newNeighbourBottom=Rules.rules[automata][i*16+15];
-				newNeighbourLeft=Rules.rules[automata][i*16+16];
-				newNeighbourRight=Rules.rules[automata][i*16+17];
-				updated=1;
-				break;
-			}
+	/* Compiled transition tables, one for each STCA in Rules.rules (and in the same order).
+	 * A table is indexed by the 8-bit key of a cell and its neighbouring subcells (see key()),
+	 * and each entry holds the key that results from applying the first matching rule, including
+	 * all rotations/reflections the STCA is symmetric under, or -1 if no rule can be applied.
+	 * Tables are built the first time an STCA is selected, so a transition attempt is a single lookup */
+	static int[][] compiledRules = new int[Rules.rules.length][];
+
+	/* Builds (if not already built) and returns the compiled transition table for the given STCA.
+	 * For every one of the 256 possible neighbourhoods, the rotations and reflections are tried in
+	 * exactly the order the rules were originally searched in, so the first rule found is the same */
+	static int[] compileRules(int automata){
+		int[] table=compiledRules[automata];
+		if(table!=null){
+			return table;
 		}
-
-		/* Return the new cell (which may or may not be equivalent to the input cell) and
-		 * a flag to indicate whether a change has been detected and applied */
-		return new int[]{newLocalTop,newLocalBottom,newLocalLeft,newLocalRight,newNeighbourTop,newNeighbourBottom,
-				newNeighbourLeft,newNeighbourRight, updated};
-	}
-
-	/* Given the cell space and a set of coordinates, attempt to
-	 * apply a transition to the cell at those coordinates */
-	static boolean executeTransition(int x, int y, Cell[][] grid) {
-
-		/* Retrieve the states of all relevant subcells (including neighbours) */
-		int localTop=grid[x][y].topSubcellValue;
-		int localBottom=grid[x][y].bottomSubcellValue;
-		int localLeft=grid[x][y].leftSubcellValue;
-		int localRight=grid[x][y].rightSubcellValue;
-		int neighbourTop=grid[x][y-1].bottomSubcellValue;
-		int neighbourRight=grid[x+1][y].leftSubcellValue;
-		int neighbourBottom=grid[x][y+1].topSubcellValue;
-		int neighbourLeft=grid[x-1][y].rightSubcellValue;
-
-		/* Assume it has not been updated until otherwise */
-		boolean updated=false;
+		table=new int[256];
 
 		/* Record the number of rotations needed and how
 		 * many times we need to reflect */
 		int rotations=0;
-		int reflect=0;
-
-		/* Check if the automaton is rotation symmetric and set
-		 * number of rotations needed */
-		if(Rules.rules[GlobalAttributes.automata][0]==1){
+		if(Rules.rules[automata][0]==1){
 			rotations=3;
 		}
-
-		/* Set reflection type given by the STCA rules */
-		reflect=Rules.rules[GlobalAttributes.automata][1];
-
-		/* Calculate how many different times to reflect */
+		int reflect=Rules.rules[automata][1];
 		int reflectTimes=0;
 
 		/* If only horizontal or only vertical then we only reflect once */
@@ -110,225 +40,142 @@ public class ApplyRule {
 		/* If compounded then reflect three times (once for each individual axis,
 		 * and then compounded */
 		else if(reflect==4){
-			reflectTimes=3; /* If rotation symmetric then this is not needed */
+			reflectTimes=3;
 		}
 
-		/* Use this to store the subcells' states after rotations */
-		int[] subcells;
-
-		/* For each possible reflection (including none) */
-		for(int r=0;r<=reflectTimes;r++){
-
-			/* If we are currently reflecting (so every time we visit this after the 0th iteration) */
-			if(r>0){
-				
-				/* This decides whether to reflect horizontally */
-				if(reflect==1 /* We are reflecting only horizontally, so we must be doing so now */
-						|| (reflect==3 && r==1) /* Reflecting both but not together, so only do it
-												the first time arriving here */
-						|| (reflect==4 && r!=2) /* Reflecting both separately AND together, so do it, the first
-												and third times we are here */){
-					
-					/* Reflect the subcells horizontally */
-					subcells=reflect(localTop,localBottom,localLeft,localRight,
-							neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,1);
-					localTop=subcells[0];
-					localBottom=subcells[1];
-					localLeft=subcells[2];
-					localRight=subcells[3];
-					neighbourTop=subcells[4];
-					neighbourBottom=subcells[5];
-					neighbourLeft=subcells[6];
-					neighbourRight=subcells[7];
-				}
-				
-				/* This decides whether to reflect vertically */
-				if(reflect==2 /* We are are reflecting only vertically, so we must be doing so now */
-						|| (reflect==3 && r==2) /* Reflecting both but not together, so only do it
-												the second time arriving here */
-						|| (reflect==4 && r!=1) /* Reflecting both separately AND together, so do it the second
-												and third times we are here */){
-					
-					/* Reflect the subcells vertically */
-					subcells=reflect(localTop,localBottom,localLeft,localRight,
-							neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,2);
-					localTop=subcells[0];
-					localBottom=subcells[1];
-					localLeft=subcells[2];
-					localRight=subcells[3];
-					neighbourTop=subcells[4];
-					neighbourBottom=subcells[5];
-					neighbourLeft=subcells[6];
-					neighbourRight=subcells[7];
-				}
-			}
+		/* For every possible neighbourhood */
+		for(int key=0;key<256;key++){
 
-			/* For each rotation position - including the initial (which is also done when not rotating) */
-			for(int i=0; i<=rotations;i++){
+			/* Assume no rule can be applied until one is found */
+			table[key]=-1;
 
-				/* Rotate the cells 90*i degrees on the i'th iteration */
-				if(i>0){
-					subcells=rotate(localTop,localBottom,localLeft,localRight,
-							neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,i);
-					localTop=subcells[0];
-					localBottom=subcells[1];
-					localLeft=subcells[2];
-					localRight=subcells[3];
-					neighbourTop=subcells[4];
-					neighbourBottom=subcells[5];
-					neighbourLeft=subcells[6];
-					neighbourRight=subcells[7];
-				}
-				
-				/* Search and apply a rule if possible */
-				int[] updates=applyRule(localTop,localBottom,localLeft,localRight, 
-						neighbourTop, neighbourBottom, neighbourLeft, neighbourRight);
+			search:
+			for(int r=0;r<=reflectTimes;r++){
 
-				/* If we have rotated at all */
-				if(i>0){
-					
-					/* Keep rotating the result by 4-i to end up back in the initial position
-					 * and apply it to the original cell (if no update occurred then it will
-					 * just end up the original (possibly still reflected) cell) */
-					subcells=rotate(updates[0],updates[1],updates[2],updates[3],
-							updates[4],updates[5],updates[6],updates[7],4-i);
-					localTop=subcells[0];
-					localBottom=subcells[1];
-					localLeft=subcells[2];
-					localRight=subcells[3];
-					neighbourTop=subcells[4];
-					neighbourBottom=subcells[5];
-					neighbourLeft=subcells[6];
-					neighbourRight=subcells[7];
-					
-				/* Or if no rotation occurred, and an update occurred, then just
-				 * equate the original (possibly reflected) cell to the result 
-				 * (this stops it bothering if no update occurred) */
-				}else if(updates[8]==1){
-					localTop=updates[0];
-					localBottom=updates[1];
-					localLeft=updates[2];
-					localRight=updates[3];
-					neighbourTop=updates[4];
-					neighbourBottom=updates[5];
-					neighbourLeft=updates[6];
-					neighbourRight=updates[7];
-				}
+				/* Reflect the neighbourhood as the r'th reflection requires */
+				int reflected=reflectKey(key,reflect,r);
 
-				/* If an update occurred */
-				if(updates[8]==1){
+				for(int i=0;i<=rotations;i++){
 
-					/* Prematurely undo reflection (this is after rotation has been undone) - this is ok as we will
-					 * not be doing another pass, so we can undo the reflection early, it is not going to be used for
-					 * a future rotation - this is also required to record new result correctly */
-					if(r>0){
-						
-						/* Re-reflect horizontally same as above if required */
-						if(reflect==1
-								|| (reflect==3 && r==1)
-								|| (reflect==4 && r!=2)){
-							subcells=reflect(localTop,localBottom,localLeft,localRight,
-									neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,1);
-							localTop=subcells[0];
-							localBottom=subcells[1];
-							localLeft=subcells[2];
-							localRight=subcells[3];
-							neighbourTop=subcells[4];
-							neighbourBottom=subcells[5];
-							neighbourLeft=subcells[6];
-							neighbourRight=subcells[7];
-						}
-						
-						/* Re-reflect vertically same as above if required */
-						if(reflect==2 
-								|| (reflect==3 && r==2)
-								|| (reflect==4 && r!=1)){
-							subcells=reflect(localTop,localBottom,localLeft,localRight,
-									neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,2);
-							localTop=subcells[0];
-							localBottom=subcells[1];
-							localLeft=subcells[2];
-							localRight=subcells[3];
-							neighbourTop=subcells[4];
-							neighbourBottom=subcells[5];
-							neighbourLeft=subcells[6];
-							neighbourRight=subcells[7];
-						}
-					}
+					/* Search for a rule matching the neighbourhood rotated 90*i degrees */
+					int rule=findRule(automata,rotateKey(reflected,i));
 
-					/* Set the new subcell values for the cell */
-					grid[x][y].topSubcellValue=localTop;
-					grid[x][y].bottomSubcellValue=localBottom;
-					grid[x][y].leftSubcellValue=localLeft;
-					grid[x][y].rightSubcellValue=localRight;
-					
-					/* Only set the appropriate neighbours if they actually exist
-					 * i.e. we don't attempt to modify cells beyond the edges */
-					if(y>0){
-						grid[x][y-1].bottomSubcellValue=neighbourTop;
-					}
-					if(y<GlobalAttributes.yCells-1){
-						grid[x][y+1].topSubcellValue=neighbourBottom;
-					}
-					if(x>0){
-						grid[x-1][y].rightSubcellValue=neighbourLeft;}
-					if(x<GlobalAttributes.xCells-1){
-						grid[x+1][y].leftSubcellValue=neighbourRight;
+					/* If a rule is found, rotate and reflect its result back to the
+					 * original orientation and record it */
+					if(rule!=-1){
+						table[key]=reflectKey(rotateKey(ruleKey(automata,rule,10),(4-i)%4),reflect,r);
+						break search;
 					}
-					
-					/* Stop trying new rotations and just break from the loop */
-					updated=true;
-					break;
 				}
 			}
-			/* Reflection is already undone if update has occurred, so now just break away from whole process */
-			if(updated){
-				break;
-			}
-			
-			/* Undo reflection ready for next fresh reflection loop if one is active */
-			else if(r>0){
-				
-				/* Re-reflect horizontally same as above if required */
-				if(reflect==1
-						|| (reflect==3 && r==1)
-						|| (reflect==4 && r!=2)){
-					subcells=reflect(localTop,localBottom,localLeft,localRight,
-							neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,1);
-					localTop=subcells[0];
-					localBottom=subcells[1];
-					localLeft=subcells[2];
-					localRight=subcells[3];
-					neighbourTop=subcells[4];
-					neighbourBottom=subcells[5];
-					neighbourLeft=subcells[6];
-					neighbourRight=subcells[7];
-				}
-				
-				/* Re-reflect vertically same as above if required */
-				if(reflect==2
-						|| (reflect==3 && r==2)
-						|| (reflect==4 && r!=1)){
-					subcells=reflect(localTop,localBottom,localLeft,localRight,
-							neighbourTop,neighbourBottom,neighbourLeft,neighbourRight,2);
-					localTop=subcells[0];
-					localBottom=subcells[1];
-					localLeft=subcells[2];
-					localRight=subcells[3];
-					neighbourTop=subcells[4];
-					neighbourBottom=subcells[5];
-					neighbourLeft=subcells[6];
-					neighbourRight=subcells[7];
-				}
+		}
+		compiledRules[automata]=table;
+		return table;
+	}
+
+	/* Searches the (unrotated, unreflected) rules of the given STCA for one whose
+	 * source matches the given key, and returns its number, or -1 if there is none */
+	static int findRule(int automata, int key){
+		int noOfRules = (Rules.rules[automata].length-2)/16;
+		for(int i=0; i<noOfRules;i++){
+			if(ruleKey(automata,i,2)==key){
+				return i;
 			}
 		}
-		
-		/* Return whether there was an update or not */
-		return updated;
+		return -1;
+	}
+
+	/* Packs the 8 subcell states of a rule's source (offset 2) or target (offset 10) into a key */
+	static int ruleKey(int automata, int rule, int offset){
+		byte[] rules=Rules.rules[automata];
+		return key(rules[rule*16+offset],rules[rule*16+offset+1],rules[rule*16+offset+2],rules[rule*16+offset+3],
+				rules[rule*16+offset+4],rules[rule*16+offset+5],rules[rule*16+offset+6],rules[rule*16+offset+7]);
+	}
+
+	/* Packs the states of a cell's subcells and its neighbouring subcells into an 8-bit key,
+	 * in the same order as they are listed in the rules (the local top subcell is the highest bit) */
+	static int key(int localTop, int localBottom, int localLeft, int localRight, 
+			int neighbourTop, int neighbourBottom, int neighbourLeft, int neighbourRight){
+		return localTop<<7 | localBottom<<6 | localLeft<<5 | localRight<<4
+				| neighbourTop<<3 | neighbourBottom<<2 | neighbourLeft<<1 | neighbourRight;
+	}
+
+	/* Rotates a key by noOfRotations multiples of 90 degrees, in the same way as rotate() */
+	static int rotateKey(int key, int noOfRotations){
+		for(int i=0;i<noOfRotations;i++){
+
+			/* Within each half of the key: the new top is the old left, the new bottom is the
+			 * old right, the new left is the old bottom and the new right is the old top */
+			key=(key&0x22)<<2 | (key&0x11)<<2 | (key&0x44)>>>1 | (key&0x88)>>>3;
+		}
+		return key;
+	}
+
+	/* Applies the reflection(s) needed on the r'th reflection pass of an STCA with the given
+	 * reflection type, in the same way as executeTransition used to. Reflections are their own
+	 * inverse, so this also undoes them */
+	static int reflectKey(int key, int reflect, int r){
+		if(r==0){
+			return key;
+		}
+
+		/* Reflect horizontally (swap left and right) if required */
+		if(reflect==1 || (reflect==3 && r==1) || (reflect==4 && r!=2)){
+			key=(key&0xCC) | (key&0x22)>>>1 | (key&0x11)<<1;
+		}
+
+		/* Reflect vertically (swap top and bottom) if required */
+		if(reflect==2 || (reflect==3 && r==2) || (reflect==4 && r!=1)){
+			key=(key&0x33) | (key&0x88)>>>1 | (key&0x44)<<1;
+		}
+		return key;
+	}
+
+	/* Given the cell space and a set of coordinates, attempt to
+	 * apply a transition to the cell at those coordinates. The neighbourhood
+	 * is read, matched and written back using primitives only, so an attempt
+	 * never allocates (this is called millions of times per second) */
+	static boolean executeTransition(int x, int y, CellGrid grid) {
+
+		/* Look up the result for the cell's neighbourhood in the current STCA's compiled table */
+		int result=compileRules(GlobalAttributes.automata)[readKey(x,y,grid)];
+
+		/* No rule can be applied */
+		if(result==-1){
+			return false;
+		}
+		writeKey(x,y,grid,result);
+		return true;
+	}
+
+	/* Returns whether a rule of the current STCA can be applied to the cell at the given coordinates */
+	static boolean isEnabled(int x, int y, CellGrid grid){
+		return compileRules(GlobalAttributes.automata)[readKey(x,y,grid)]!=-1;
+	}
+
+	/* Retrieves the states of all relevant subcells of the cell at the given coordinates
+	 * (including neighbours) as a key */
+	static int readKey(int x, int y, CellGrid grid){
+		return grid.get(x,y)<<4
+				| grid.getBottom(x,y-1)<<3
+				| grid.getTop(x,y+1)<<2
+				| grid.getRight(x-1,y)<<1
+				| grid.getLeft(x+1,y);
+	}
+
+	/* Sets the subcells of the cell at the given coordinates, and the neighbouring
+	 * subcells, to the states given by a key */
+	static void writeKey(int x, int y, CellGrid grid, int key){
+		grid.set(x,y,key>>>4);
+		grid.setBottom(x,y-1,key>>>3&1);
+		grid.setTop(x,y+1,key>>>2&1);
+		grid.setRight(x-1,y,key>>>1&1);
+		grid.setLeft(x+1,y,key&1);
 	}
 
 	/* Rotates subcell states by noOfRotations multiples of 90 degrees just 
-	 * by swapping them appropriately, then return the newly rotated cell */
+	 * by swapping them appropriately, then return the newly rotated cell
+	 * (this allocates, so is only used by the rule examiner - transitions use rotateKey) */
 	public static int[] rotate(int top, int bottom, int left, int right, 
 			int neighbourUp, int neighbourBottom, int neighbourLeft, int neighbourRight, 
 			int noOfRotations){
@@ -365,7 +212,8 @@ public class ApplyRule {
 
 	/* Reflect subcell states by just swapping them appropriately
 	 * Then return the newly reflected cell
-	 * reflection type: 1= horizontal, 2=vertical */
+	 * reflection type: 1= horizontal, 2=vertical
+	 * (this allocates, so is only used by the rule examiner - transitions use reflectKey) */
 	public static int[] reflect(int top, int bottom, int left, int right, 
 			int neighbourUp, int neighbourBottom, int neighbourLeft, int neighbourRight, 
 			int reflectType){
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.Vector;
+
+/* Class for running simulations without the GUI, e.g. on a server with no display. Loads a
+ * configuration file, runs a number of transitions of the chosen STCA (or keeps going until no
+ * transition can take place) as fast as possible, then saves the final configuration and prints
+ * some statistics. Usage:
+ *
+ *   java Batch [-packed | -text] <input.con> <automaton> <seed> <transitions | all> <output.con> [threads [tiled | cas]]
+ *
+ * where automaton is numbered 0,1,2... in the same order as the GUI's "STCA" list. Given a number
+ * of threads, transitions are run on that many threads at once by a TiledEngine (for large cell
+ * spaces) or, with "cas", a CasEngine, otherwise one at a time. With -packed, the output is saved
+ * with the PACKED encoding of ConfigurationFile rather than TILED (quicker for dense cell spaces,
+ * which TILED hardly shrinks), and with -text in the old text format, for earlier versions of the
+ * program to read */
+public class Batch {
+
+	/* Program entry point for batch runs */
+	public static void main(String[] args){
+
+		/* Nothing here needs a display, make sure none is ever asked for */
+		System.setProperty("java.awt.headless","true");
+
+		boolean packed=args.length>0 && args[0].equals("-packed");
+		boolean text=args.length>0 && args[0].equals("-text");
+		if(packed || text){
+			args=Arrays.copyOfRange(args,1,args.length);
+		}
+		if(args.length<5 || args.length>7 || (args.length==7 && !args[6].equals("tiled") && !args[6].equals("cas"))){
+			System.err.println("Usage: java Batch [-packed | -text] <input.con> <automaton> <seed> <transitions | all> <output.con> [threads [tiled | cas]]");
+			System.exit(1);
+		}
+
+		try{
+
+			/* Read the arguments - a negative number of transitions means run until quiescence */
+			String input=args[0];
+			int automata=Integer.parseInt(args[1]);
+			long seed=Long.parseLong(args[2]);
+			long transitions=args[3].equals("all") ? -1 : Long.parseLong(args[3]);
+			String output=args[4];
+			int threads=args.length>5 ? Integer.parseInt(args[5]) : 0;
+			boolean cas=args.length>6 && args[6].equals("cas");
+			if(automata<0 || automata>=Rules.rules.length){
+				throw new IllegalArgumentException("automaton must be between 0 and "+(Rules.rules.length-1));
+			}
+
+			/* Load the configuration, keeping its annotations so they are saved again */
+			Vector<String> labels=new Vector<String>();
+			Vector<Integer> coordinates=new Vector<Integer>();
+			CellGrid grid=ConfigurationFile.load(input,labels,coordinates);
+			GlobalAttributes.automata=automata;
+
+			/* Run the transitions, stopping early if no cell is enabled */
+			RandomStreams.setSeed(seed);
+			SplittableRandom random=RandomStreams.stream(RandomStreams.SIMULATION);
+			long start=System.nanoTime();
+			long done=0;
+			long enabled;
+			if(threads>0 && cas){
+				CasEngine engine=new CasEngine(grid,random);
+				done=engine.run(transitions,threads);
+				enabled=new Frontier(grid).size;
+			}
+			else if(threads>0){
+				TiledEngine engine=new TiledEngine(grid,random);
+				done=engine.run(transitions,threads);
+				enabled=engine.enabledCount();
+			}
+			else{
+				Frontier frontier=new Frontier(grid);
+				while(done!=transitions && frontier.fire(random)>=0){
+					done++;
+				}
+				enabled=frontier.size;
+			}
+			double seconds=(System.nanoTime()-start)/1e9;
+
+			if(text){
+				ConfigurationFile.saveText(output,grid,labels,coordinates);
+			}
+			else{
+				ConfigurationFile.save(output,grid,labels,coordinates,packed ? ConfigurationFile.PACKED : ConfigurationFile.TILED);
+			}
+
+			/* Report what happened */
+			System.out.println("Size: "+grid.width+" x "+grid.height+" cells");
+			System.out.println("Transitions: "+done);
+			System.out.println("Enabled cells at end: "+enabled+(enabled==0 ? " (quiescent)" : ""));
+			System.out.println("Time: "+String.format("%.3f",seconds)+" s ("
+					+String.format("%.0f",done/Math.max(seconds,1e-9))+" transitions/s)");
+		}
+		catch(Exception e){
+			System.err.println("Batch run failed: "+e);
+			System.exit(1);
+		}
+	}
+}
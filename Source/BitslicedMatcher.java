@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/* Finds which cells of a grid are enabled, 64 adjacent cells at a time. The eight subcells a rule
+ * looks at are each available, for a whole row word of cells, as a word of the grid's bitplanes: the
+ * cell's own four subcells directly, the facing subcells of the neighbours above and below from the
+ * same word of the rows above and below, and those of the neighbours to the left and right by
+ * shifting the row one place (carrying the bit across from the next word). The set of enabled
+ * neighbourhoods of the STCA (every rule in every rotation and reflection, as compiled by ApplyRule)
+ * is then evaluated as a boolean function of those eight words: split into the 16 combinations of
+ * the cell's own subcells and the 16 combinations of the facing subcells, each combination being
+ * the AND of four words, and OR-ing together the pairs which are enabled */
+public class BitslicedMatcher {
+
+	/* For each STCA, built when first needed: for each of the 16 combinations of a cell's own
+	 * subcells, the (16-bit) set of combinations of facing subcells which make it enabled */
+	static short[][] enabledPairs=new short[Rules.rules.length][];
+
+	/* Builds (if not already built) and returns the enabled pairs of the given STCA */
+	static short[] enabledPairs(int automata){
+		short[] pairs=enabledPairs[automata];
+		if(pairs!=null){
+			return pairs;
+		}
+		int[] table=ApplyRule.compileRules(automata);
+		pairs=new short[16];
+		for(int key=0;key<256;key++){
+			if(table[key]>=0){
+				pairs[key>>>4]|=1<<(key&15);
+			}
+		}
+		enabledPairs[automata]=pairs;
+		return pairs;
+	}
+
+	/* The Vector API version of findEnabled (see Vector/VectorMatcher.java), or null if it was not
+	 * compiled or the JVM was not started with --add-modules jdk.incubator.vector */
+	static final EnabledFinder vectorFinder=loadVectorFinder();
+
+	/* Returns a new VectorMatcher if the class and the Vector API are both available, otherwise null */
+	private static EnabledFinder loadVectorFinder(){
+		try{
+			EnabledFinder finder=(EnabledFinder)Class.forName("VectorMatcher").getDeclaredConstructor().newInstance();
+
+			/* Make sure it really works here before relying on it */
+			CellGrid grid=new CellGrid(3,3);
+			finder.findEnabled(grid,0,new long[grid.top.length]);
+			return finder;
+		}
+		catch(Throwable e){
+			return null;
+		}
+	}
+
+	/* Writes into enabled (indexed as the grid's bitplanes) a bit for every cell which is enabled for
+	 * the given STCA - cells on the edge of the grid are never enabled. Uses the Vector API version
+	 * when it is available, otherwise one word at a time */
+	static void findEnabled(CellGrid grid, int automata, long[] enabled){
+		if(vectorFinder!=null){
+			vectorFinder.findEnabled(grid,automata,enabled);
+			return;
+		}
+		short[] pairs=enabledPairs(automata);
+		long[] own=new long[16];
+		long[] facing=new long[16];
+		clearEdgeRows(grid,enabled);
+		for(int y=1;y<grid.height-1;y++){
+			for(int w=0;w<grid.wordsPerRow;w++){
+				enabled[y*grid.wordsPerRow+w]=matchWord(grid,pairs,y,w,own,facing);
+			}
+		}
+	}
+
+	/* Clears the words of the top and bottom rows, whose cells are never enabled */
+	static void clearEdgeRows(CellGrid grid, long[] enabled){
+		Arrays.fill(enabled,0,grid.wordsPerRow,0);
+		Arrays.fill(enabled,(grid.height-1)*grid.wordsPerRow,grid.height*grid.wordsPerRow,0);
+	}
+
+	/* Returns the bits of the enabled cells in word w of interior row y, using own and facing
+	 * (arrays of 16) as work space */
+	static long matchWord(CellGrid grid, short[] pairs, int y, int w, long[] own, long[] facing){
+		int perRow=grid.wordsPerRow;
+		int i=y*perRow+w;
+
+		/* The cell's own subcells */
+		combinations(grid.top[i],grid.bottom[i],grid.left[i],grid.right[i],own);
+
+		/* The facing subcells of its neighbours above, below, to the left and to the right */
+		long leftNeighbour=grid.right[i]<<1;
+		long rightNeighbour=grid.left[i]>>>1;
+		if(w>0){
+			leftNeighbour|=grid.right[i-1]>>>63;
+		}
+		if(w<perRow-1){
+			rightNeighbour|=grid.left[i+1]<<63;
+		}
+		combinations(grid.bottom[i-perRow],grid.top[i+perRow],leftNeighbour,rightNeighbour,facing);
+
+		/* Cells which are in an enabled neighbourhood */
+		long result=0;
+		for(int a=0;a<16;a++){
+			int set=pairs[a]&0xFFFF;
+			if(set!=0){
+				long matches=0;
+				while(set!=0){
+					matches|=facing[Integer.numberOfTrailingZeros(set)];
+					set&=set-1;
+				}
+				result|=own[a]&matches;
+			}
+		}
+		return result&interiorColumns(grid,w);
+	}
+
+	/* Bits of word w of a row which are interior cells (not the first or last cell, nor beyond the end of the row) */
+	static long interiorColumns(CellGrid grid, int w){
+		long mask=w==0 ? ~1L : -1L;
+		int valid=grid.width-1-(w<<6);
+		if(valid<64){
+			mask&=valid<=0 ? 0 : (1L<<valid)-1;
+		}
+		return mask;
+	}
+
+	/* Writes into combinations, for each of the 16 combinations of four subcells (first subcell
+	 * in bit 3 down to the fourth in bit 0, as in the rules' keys), the word of cells in which the
+	 * subcells have exactly those states */
+	static void combinations(long first, long second, long third, long fourth, long[] combinations){
+		long a0=~first&~second;
+		long a1=~first&second;
+		long a2=first&~second;
+		long a3=first&second;
+		long b0=~third&~fourth;
+		long b1=~third&fourth;
+		long b2=third&~fourth;
+		long b3=third&fourth;
+		combinations[0]=a0&b0;
+		combinations[1]=a0&b1;
+		combinations[2]=a0&b2;
+		combinations[3]=a0&b3;
+		combinations[4]=a1&b0;
+		combinations[5]=a1&b1;
+		combinations[6]=a1&b2;
+		combinations[7]=a1&b3;
+		combinations[8]=a2&b0;
+		combinations[9]=a2&b1;
+		combinations[10]=a2&b2;
+		combinations[11]=a2&b3;
+		combinations[12]=a3&b0;
+		combinations[13]=a3&b1;
+		combinations[14]=a3&b2;
+		combinations[15]=a3&b3;
+	}
+}
@@ -0,0 +1,350 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Runs transitions on several threads at once without any lock on the grid. Before a transition,
+ * a worker claims the five cells it reads and writes (the cell and its four neighbours) by setting
+ * their bits in a bitmap of claims with compareAndSet, one word at a time in increasing order. If
+ * any of the cells is already claimed, the claims made so far are released and the worker tries
+ * another cell. Holding the claim, it checks the cell is (still) enabled, applies the transition
+ * and releases the claim. Two transitions can only overlap if they claim none of the same cells,
+ * i.e. when they are independent, so every run is equivalent to one order of single transitions.
+ *
+ * Neighbouring cells share the words of the bitplanes, so the subcells are written with atomic
+ * XORs rather than CellGrid's setters, and the grid's hash is worked out again at the end of a run.
+ *
+ * The workers share a bitmap of candidates: cells which may be enabled. Whether a cell is enabled
+ * can only change through a transition at the cell or a neighbour, which would have to claim the
+ * cell too, so while a cell is claimed it is known for certain - a candidate found not to be
+ * enabled is dropped, and after a transition the cell's neighbours are made candidates before the
+ * claim is released. Every enabled cell is thus always a candidate. A binary tree of counts over
+ * the words of the bitmap (each node holding the number of candidates below it) lets a worker
+ * choose a candidate uniformly in a number of steps logarithmic in the size of the grid, and the
+ * run ends once the count at the root is 0. Unlike TiledEngine, results depend on the timing of
+ * the threads */
+public class CasEngine {
+
+	/* Access to the words of the claims, the candidates, the counts and the bitplanes with atomic
+	 * operations */
+	static final VarHandle WORDS=MethodHandles.arrayElementVarHandle(long[].class);
+
+	/* Number of transitions a worker reserves at once, when running a given number */
+	static final int RESERVE=256;
+
+	/* The cell space the engine runs */
+	final CellGrid grid;
+
+	/* Bit for each claimed cell, and for each candidate (indexed as the grid's bitplanes) */
+	final long[] claims;
+	final long[] candidates;
+
+	/* Tree of the numbers of candidates, with the root at 1, the children of node i at 2i and
+	 * 2i+1, and the count of word w of the candidates at leaves+w. A count is raised before the
+	 * bit is set and lowered after it is cleared, so it is never less than the bits below it */
+	final int leaves;
+	final long[] counts;
+
+	/* Stream every worker's stream is split from */
+	final SplittableRandom master;
+
+	/* Transitions handed out to workers so far, when running a given number */
+	final AtomicLong reserved=new AtomicLong();
+
+	/* Counts of transitions, and of cells which were already claimed by another worker */
+	final LongAdder fired=new LongAdder();
+	final LongAdder contended=new LongAdder();
+
+	/* Set to end a run early */
+	volatile boolean stopped=false;
+
+	/* Constructor - for the given grid, with every worker's stream split from master */
+	public CasEngine(CellGrid grid, SplittableRandom master){
+		this.grid=grid;
+		this.master=master;
+		claims=new long[grid.top.length];
+		candidates=new long[grid.top.length];
+		int size=1;
+		while(size<candidates.length){
+			size<<=1;
+		}
+		leaves=size;
+		counts=new long[2*leaves];
+	}
+
+	/* Runs the given number of transitions or, if transitions is negative, until no transition
+	 * can take place, on the given number of threads. Returns the number of transitions fired */
+	long run(final long transitions, int threads) throws InterruptedException{
+		final int[] table=ApplyRule.compileRules(GlobalAttributes.automata);
+		long start=fired.sum();
+
+		/* Start with the enabled cells as the candidates */
+		Arrays.fill(candidates,0);
+		Arrays.fill(counts,0);
+		Frontier frontier=new Frontier(grid);
+		for(int i=0;i<frontier.size;i++){
+			long cell=frontier.cells[i];
+			offer((int)(cell%grid.width),(int)(cell/grid.width));
+		}
+		reserved.set(0);
+
+		Thread[] workers=new Thread[threads];
+		for(int i=0;i<threads;i++){
+			final SplittableRandom random=master.split();
+			workers[i]=new Thread(new Runnable(){
+				@Override
+				public void run(){
+					work(table,transitions,random);
+				}
+			});
+			workers[i].start();
+		}
+		for(Thread worker : workers){
+			worker.join();
+		}
+		grid.rehash();
+		return fired.sum()-start;
+	}
+
+	/* Execution logic for each worker thread */
+	void work(int[] table, long transitions, SplittableRandom random){
+		long allowance=0;
+		while(!stopped){
+			long total=(long)WORDS.getVolatile(counts,1);
+			if(total<=0){
+				break;
+			}
+			long index=choose(CellSampler.bounded(random,total));
+			if(index<0){
+				continue;
+			}
+			int word=(int)(index>>>6);
+			int x=((word%grid.wordsPerRow)<<6)+(int)(index&63);
+			int y=word/grid.wordsPerRow;
+			if(!claim(x,y)){
+				contended.increment();
+				continue;
+			}
+			int key=ApplyRule.readKey(x,y,grid);
+			int result=table[key];
+
+			/* Drop a candidate which is not enabled */
+			if(result<0){
+				drop(x,y);
+				release(x,y);
+				continue;
+			}
+
+			/* Take more transitions if needed, ending once they have all been done */
+			if(transitions>=0 && allowance==0){
+				allowance=reserve(transitions);
+				if(allowance==0){
+					release(x,y);
+					if(fired.sum()>=transitions){
+						return;
+					}
+					Thread.yield();
+					continue;
+				}
+			}
+			write(x,y,key^result);
+			allowance--;
+			fired.increment();
+
+			/* The neighbours may have become enabled (the cell itself stays a candidate) */
+			offer(x,y-1);
+			offer(x,y+1);
+			offer(x-1,y);
+			offer(x+1,y);
+			release(x,y);
+		}
+
+		/* Hand back the transitions not done, for any worker still running */
+		if(allowance>0){
+			reserved.addAndGet(-allowance);
+		}
+	}
+
+	/* Reserves up to RESERVE of the given number of transitions, returning how many (0 if the
+	 * rest are all held by other workers, who may yet hand some back) */
+	long reserve(long transitions){
+		while(true){
+			long taken=reserved.get();
+			long count=Math.min(RESERVE,transitions-taken);
+			if(count<=0){
+				return 0;
+			}
+			if(reserved.compareAndSet(taken,taken+count)){
+				return count;
+			}
+		}
+	}
+
+	/* Returns the bit index (word*64+bit) of the candidate of the given rank, going down the tree
+	 * of counts, or -1 if the counts and the candidates disagree (as other workers change them) */
+	long choose(long rank){
+		int node=1;
+		while(node<leaves){
+			long left=(long)WORDS.getOpaque(counts,2*node);
+			if(rank<left){
+				node=2*node;
+			}
+			else{
+				rank-=left;
+				node=2*node+1;
+			}
+		}
+		int word=node-leaves;
+		if(word>=candidates.length){
+			return -1;
+		}
+		long bits=(long)WORDS.getVolatile(candidates,word);
+		if(Long.bitCount(bits)<=rank){
+			return -1;
+		}
+		for(long i=0;i<rank;i++){
+			bits&=bits-1;
+		}
+		return ((long)word<<6)+Long.numberOfTrailingZeros(bits);
+	}
+
+	/* Makes the cell x,y a candidate, if it is an interior cell. Only called holding a claim on
+	 * the cell, so no other worker adds or drops it meanwhile */
+	void offer(int x, int y){
+		if(x<1 || x>=grid.width-1 || y<1 || y>=grid.height-1){
+			return;
+		}
+		int word=grid.word(x,y);
+		long bit=1L<<x;
+		if(((long)WORDS.getVolatile(candidates,word)&bit)==0){
+			count(word,1);
+			WORDS.getAndBitwiseOr(candidates,word,bit);
+		}
+	}
+
+	/* Stops the (claimed) cell x,y being a candidate */
+	void drop(int x, int y){
+		int word=grid.word(x,y);
+		long bit=1L<<x;
+		if(((long)WORDS.getAndBitwiseAnd(candidates,word,~bit)&bit)!=0){
+			count(word,-1);
+		}
+	}
+
+	/* Adds change to the count of the given word of the candidates and every node above it */
+	void count(int word, long change){
+		for(int node=leaves+word;node>0;node>>=1){
+			WORDS.getAndAdd(counts,node,change);
+		}
+	}
+
+	/* Claims the cell x,y and its four neighbours, and returns whether it could (if not, none of
+	 * them are left claimed) */
+	boolean claim(int x, int y){
+		int above=grid.word(x,y-1);
+		int leftWord=grid.word(x-1,y);
+		int rightWord=grid.word(x+1,y);
+		long leftMask=rowMask(x-1,leftWord==rightWord ? x+1 : (x-1)|63);
+		if(!claimWord(above,1L<<x)){
+			return false;
+		}
+		if(!claimWord(leftWord,leftMask)){
+			releaseWord(above,1L<<x);
+			return false;
+		}
+		if(leftWord!=rightWord && !claimWord(rightWord,rowMask(x+1&~63,x+1))){
+			releaseWord(leftWord,leftMask);
+			releaseWord(above,1L<<x);
+			return false;
+		}
+		if(!claimWord(grid.word(x,y+1),1L<<x)){
+			if(leftWord!=rightWord){
+				releaseWord(rightWord,rowMask(x+1&~63,x+1));
+			}
+			releaseWord(leftWord,leftMask);
+			releaseWord(above,1L<<x);
+			return false;
+		}
+		return true;
+	}
+
+	/* Releases the claim on the cell x,y and its four neighbours */
+	void release(int x, int y){
+		int leftWord=grid.word(x-1,y);
+		int rightWord=grid.word(x+1,y);
+		releaseWord(grid.word(x,y+1),1L<<x);
+		if(leftWord!=rightWord){
+			releaseWord(rightWord,rowMask(x+1&~63,x+1));
+			releaseWord(leftWord,rowMask(x-1,(x-1)|63));
+		}
+		else{
+			releaseWord(leftWord,rowMask(x-1,x+1));
+		}
+		releaseWord(grid.word(x,y-1),1L<<x);
+	}
+
+	/* Bits of a word for the cells from column first to last (in the same word) */
+	static long rowMask(int first, int last){
+		return (-1L<<first)&(-1L>>>(63-(last&63)));
+	}
+
+	/* Sets the given bits of a word of the claims, if none of them are set already - retrying
+	 * if other bits of the word change in the meantime. Returns whether it did */
+	boolean claimWord(int i, long mask){
+		while(true){
+			long old=(long)WORDS.getVolatile(claims,i);
+			if((old&mask)!=0){
+				return false;
+			}
+			if(WORDS.compareAndSet(claims,i,old,old|mask)){
+				return true;
+			}
+		}
+	}
+
+	/* Clears the given bits of a word of the claims */
+	void releaseWord(int i, long mask){
+		WORDS.getAndBitwiseAndRelease(claims,i,~mask);
+	}
+
+	/* Flips the subcells of the (claimed) cell x,y and its neighbours given by the bits of
+	 * a key which change */
+	void write(int x, int y, int change){
+		if((change&0x80)!=0){
+			flip(grid.top,x,y);
+		}
+		if((change&0x40)!=0){
+			flip(grid.bottom,x,y);
+		}
+		if((change&0x20)!=0){
+			flip(grid.left,x,y);
+		}
+		if((change&0x10)!=0){
+			flip(grid.right,x,y);
+		}
+		if((change&0x08)!=0){
+			flip(grid.bottom,x,y-1);
+		}
+		if((change&0x04)!=0){
+			flip(grid.top,x,y+1);
+		}
+		if((change&0x02)!=0){
+			flip(grid.right,x-1,y);
+		}
+		if((change&0x01)!=0){
+			flip(grid.left,x+1,y);
+		}
+	}
+
+	/* Flips the bit of the given bitplane for the cell x,y, leaving the rest of the word alone */
+	void flip(long[] plane, int x, int y){
+		WORDS.getAndBitwiseXor(plane,grid.word(x,y),1L<<x);
+	}
+
+	/* Ends a run early */
+	void stop(){
+		stopped=true;
+	}
+}
@@ -0,0 +1,217 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/* Stress test of CasEngine, which has no lock on the grid, so can only be trusted as far as it is
+ * checked. For each STCA, a small random configuration is run many times by a CasEngine on several
+ * threads, and many times one transition at a time through a Frontier. Every configuration which
+ * can be reached in each number of transitions is worked out beforehand, a breadth-first search one
+ * transition at a time, so the checks are exact:
+ *
+ *   - the configuration a CasEngine run ends in must be reachable in exactly the number of
+ *     transitions the run reports, i.e. the run must be equivalent to some order of single
+ *     transitions (linearizable),
+ *   - the run must have done every transition asked for, or ended with no cell enabled.
+ *
+ * The outcomes of both kinds of run are also compared: the total variation distance between their
+ * distributions is printed next to that between two sets of single-threaded runs, as a measure of
+ * the noise. The distributions depend on the timing of the threads, so are only reported; a failed
+ * check of either kind above makes the program exit with status 1. Usage:
+ *
+ *   java CasEngineCheck [seed] [runs] [threads] [transitions]
+ *
+ * with 2000 runs of each kind, of 24 transitions, on 4 threads by default (fewer transitions leave
+ * more configurations the runs can end in) */
+public class CasEngineCheck {
+
+	/* Size of the cell space (including the outer cells, which never undergo transitions) */
+	static final int WIDTH=8;
+	static final int HEIGHT=7;
+
+	/* Transitions asked of each run */
+	final int transitions;
+
+	/* Most configurations reachable in one number of transitions before an STCA is skipped */
+	static final int MAX_LAYER=200000;
+
+	/* Number of failed checks */
+	int failures=0;
+
+	/* Constructor - for runs of the given number of transitions */
+	public CasEngineCheck(int transitions){
+		this.transitions=transitions;
+	}
+
+	/* Checks every STCA in turn, printing what was found */
+	void checkAll(long seed, int runs, int threads) throws InterruptedException{
+		SplittableRandom master=new SplittableRandom(seed);
+		for(int automata=0;automata<Rules.rules.length;automata++){
+			GlobalAttributes.automata=automata;
+			CellGrid source=randomGrid(master.split());
+			HashSet<Long>[] layers=reachable(source);
+			if(layers==null){
+				System.out.println("Automaton "+automata+": skipped (more than "+MAX_LAYER+" configurations in one step)");
+				continue;
+			}
+
+			/* Single-threaded runs, twice for the noise, then runs on several threads */
+			HashMap<Long,Integer> sequential=new HashMap<Long,Integer>();
+			HashMap<Long,Integer> again=new HashMap<Long,Integer>();
+			HashMap<Long,Integer> concurrent=new HashMap<Long,Integer>();
+			SplittableRandom random=master.split();
+			for(int run=0;run<runs;run++){
+				count(sequential,runFrontier(source,random));
+				count(again,runFrontier(source,random));
+			}
+			for(int run=0;run<runs;run++){
+				CellGrid grid=copy(source);
+				CasEngine engine=new CasEngine(grid,random.split());
+				long fired=engine.run(transitions,threads);
+				if(fired>transitions || !layers[(int)fired].contains(grid.hash)){
+					fail("Automaton "+automata+" run "+run+": configuration is not reachable in "+fired+" transitions");
+				}
+				else if(fired<transitions && new Frontier(grid).size!=0){
+					fail("Automaton "+automata+" run "+run+": ended after "+fired+" transitions with cells still enabled");
+				}
+				count(concurrent,grid.hash);
+			}
+
+			System.out.println("Automaton "+automata+": "+layers[transitions].size()+" configurations reachable in "
+					+transitions+" transitions, outcomes single-threaded "+sequential.size()+", on "+threads+" threads "
+					+concurrent.size()+", distance "+String.format("%.3f",distance(sequential,concurrent,runs))
+					+" (single-threaded against itself "+String.format("%.3f",distance(sequential,again,runs))+")");
+		}
+	}
+
+	/* A cell space with a third of its interior cells in random states */
+	static CellGrid randomGrid(SplittableRandom random){
+		CellGrid grid=new CellGrid(WIDTH,HEIGHT);
+		for(int y=1;y<HEIGHT-1;y++){
+			for(int x=1;x<WIDTH-1;x++){
+				if(random.nextInt(3)==0){
+					grid.set(x,y,random.nextInt(16));
+				}
+			}
+		}
+		grid.rehash();
+		return grid;
+	}
+
+	/* Returns the hashes of the configurations reachable from source in exactly 0, 1, 2... up to
+	 * the number of transitions of a run (a configuration with no cell enabled being reachable in
+	 * any larger number too, as a run stops there), or null if there are too many */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	HashSet<Long>[] reachable(CellGrid source){
+		HashSet<Long>[] layers=new HashSet[transitions+1];
+		CellGrid grid=copy(source);
+		long[] packed=new long[grid.packedLength()];
+		HashMap<Long,long[]> layer=new HashMap<Long,long[]>();
+		source.pack(packed,0);
+		layer.put(source.hash,packed.clone());
+		for(int step=0;;step++){
+			layers[step]=new HashSet<Long>(layer.keySet());
+			if(step==transitions){
+				return layers;
+			}
+			HashMap<Long,long[]> next=new HashMap<Long,long[]>();
+			for(Map.Entry<Long,long[]> entry : layer.entrySet()){
+				grid.unpack(entry.getValue(),0,entry.getKey());
+				boolean enabled=false;
+				for(int y=1;y<HEIGHT-1;y++){
+					for(int x=1;x<WIDTH-1;x++){
+						int key=ApplyRule.readKey(x,y,grid);
+						if(ApplyRule.executeTransition(x,y,grid)){
+							enabled=true;
+							if(!next.containsKey(grid.hash)){
+								grid.pack(packed,0);
+								next.put(grid.hash,packed.clone());
+							}
+							ApplyRule.writeKey(x,y,grid,key);
+						}
+					}
+				}
+				if(!enabled){
+					next.put(entry.getKey(),entry.getValue());
+				}
+			}
+			if(next.size()>MAX_LAYER){
+				return null;
+			}
+			layer=next;
+		}
+	}
+
+	/* Runs the transitions of a run on a copy of source one at a time, returning the hash reached */
+	long runFrontier(CellGrid source, SplittableRandom random){
+		CellGrid grid=copy(source);
+		Frontier frontier=new Frontier(grid);
+		int done=0;
+		while(done<transitions && frontier.fire(random)>=0){
+			done++;
+		}
+		return grid.hash;
+	}
+
+	/* A copy of the given grid */
+	static CellGrid copy(CellGrid grid){
+		CellGrid result=new CellGrid(grid.width,grid.height);
+		result.copyFrom(grid);
+		return result;
+	}
+
+	/* Counts one more run ending in the configuration with the given hash */
+	static void count(HashMap<Long,Integer> outcomes, long hash){
+		Integer old=outcomes.get(hash);
+		outcomes.put(hash,old==null ? 1 : old+1);
+	}
+
+	/* Total variation distance between two distributions of outcomes, each counted over runs runs */
+	static double distance(HashMap<Long,Integer> a, HashMap<Long,Integer> b, int runs){
+		HashSet<Long> outcomes=new HashSet<Long>(a.keySet());
+		outcomes.addAll(b.keySet());
+		double sum=0;
+		for(Long outcome : outcomes){
+			Integer countA=a.get(outcome);
+			Integer countB=b.get(outcome);
+			sum+=Math.abs((countA==null ? 0 : countA)-(countB==null ? 0 : countB));
+		}
+		return sum/(2.0*runs);
+	}
+
+	/* Reports a failed check */
+	void fail(String message){
+		System.out.println("FAILED: "+message);
+		failures++;
+	}
+
+	/* Program entry point for the check */
+	public static void main(String[] args){
+		System.setProperty("java.awt.headless","true");
+		if(args.length>4){
+			System.err.println("Usage: java CasEngineCheck [seed] [runs] [threads] [transitions]");
+			System.exit(1);
+		}
+		CasEngineCheck check=null;
+		try{
+			long seed=args.length>0 ? Long.parseLong(args[0]) : 1;
+			int runs=args.length>1 ? Integer.parseInt(args[1]) : 2000;
+			int threads=args.length>2 ? Integer.parseInt(args[2]) : 4;
+			int transitions=args.length>3 ? Integer.parseInt(args[3]) : 24;
+			if(runs<1 || threads<1 || transitions<0){
+				throw new IllegalArgumentException("runs and threads must be at least 1, transitions at least 0");
+			}
+			check=new CasEngineCheck(transitions);
+			check.checkAll(seed,runs,threads);
+		}
+		catch(Exception e){
+			System.err.println("Check failed to run: "+e);
+			System.exit(1);
+		}
+		if(check.failures>0){
+			System.out.println(check.failures+" checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+}
@@ -0,0 +1,273 @@
+import java.util.Arrays;
+
+/* Compact storage for a 2D array of cells. Rather than one object per cell, each of the four
+ * subcells is stored in its own bitplane: a long[] holding one bit per cell, where each row of
+ * cells occupies wordsPerRow consecutive words (64 cells to a word). A cell's state can also be
+ * read and written as a 4-bit value using the TOP, BOTTOM, LEFT and RIGHT bits below, which are
+ * in the same order as the subcells are listed in the rules.
+ *
+ * The grid also keeps a 64-bit Zobrist hash of its configuration: the XOR of a fixed pseudo-random
+ * key for every subcell in state 1. Each change to a subcell XORs its key in or out, so a transition
+ * updates the hash in constant time, and grids with different hashes are certainly different. The
+ * keys are computed from the subcell's position rather than stored, so they are the same for every
+ * grid and every thread */
+public class CellGrid {
+
+	/* Bits of the 4-bit cell state for each subcell */
+	static final int TOP=8;
+	static final int BOTTOM=4;
+	static final int LEFT=2;
+	static final int RIGHT=1;
+
+	/* Number of cells in the x-direction and y-direction */
+	int width;
+	int height;
+
+	/* Number of long words used to store a single row of one bitplane */
+	int wordsPerRow;
+
+	/* The four bitplanes - a bit is set iff that subcell of that cell is in state 1 */
+	long[] top;
+	long[] bottom;
+	long[] left;
+	long[] right;
+
+	/* Zobrist hash of the configuration */
+	long hash=0;
+
+	/* Numbers of the bitplanes, used to compute Zobrist keys */
+	static final int TOP_PLANE=0;
+	static final int BOTTOM_PLANE=1;
+	static final int LEFT_PLANE=2;
+	static final int RIGHT_PLANE=3;
+
+	/* Constructor - creates a grid of the given size with every subcell in the quiescent state */
+	public CellGrid(int width, int height){
+		this.width=width;
+		this.height=height;
+		wordsPerRow=(width+63)>>>6;
+		top=new long[wordsPerRow*height];
+		bottom=new long[wordsPerRow*height];
+		left=new long[wordsPerRow*height];
+		right=new long[wordsPerRow*height];
+	}
+
+	/* Index of the word holding the cell at the given coordinates in each bitplane */
+	int word(int x, int y){
+		return y*wordsPerRow+(x>>>6);
+	}
+
+	/* Returns the 4-bit state of the cell at the given coordinates */
+	int get(int x, int y){
+		int i=word(x,y);
+		return (int)(top[i]>>>x&1)<<3 | (int)(bottom[i]>>>x&1)<<2
+				| (int)(left[i]>>>x&1)<<1 | (int)(right[i]>>>x&1);
+	}
+
+	/* Sets the cell at the given coordinates to the given 4-bit state */
+	void set(int x, int y, int state){
+		setTop(x,y,state>>>3&1);
+		setBottom(x,y,state>>>2&1);
+		setLeft(x,y,state>>>1&1);
+		setRight(x,y,state&1);
+	}
+
+	/* Retrieve the state of a single subcell of the cell at the given coordinates */
+	int getTop(int x, int y){
+		return (int)(top[word(x,y)]>>>x&1);
+	}
+	int getBottom(int x, int y){
+		return (int)(bottom[word(x,y)]>>>x&1);
+	}
+	int getLeft(int x, int y){
+		return (int)(left[word(x,y)]>>>x&1);
+	}
+	int getRight(int x, int y){
+		return (int)(right[word(x,y)]>>>x&1);
+	}
+
+	/* Set the state of a single subcell of the cell at the given coordinates */
+	void setTop(int x, int y, int value){
+		setBit(top,TOP_PLANE,x,y,value);
+	}
+	void setBottom(int x, int y, int value){
+		setBit(bottom,BOTTOM_PLANE,x,y,value);
+	}
+	void setLeft(int x, int y, int value){
+		setBit(left,LEFT_PLANE,x,y,value);
+	}
+	void setRight(int x, int y, int value){
+		setBit(right,RIGHT_PLANE,x,y,value);
+	}
+
+	/* Sets or clears the bit of the given bitplane for the cell at the given coordinates,
+	 * updating the hash if it changes */
+	private void setBit(long[] plane, int number, int x, int y, int value){
+		int i=word(x,y);
+		long bit=1L<<x;
+		if(((plane[i]&bit)!=0)!=(value!=0)){
+			plane[i]^=bit;
+			hash^=zobrist(number,(long)y*width+x);
+		}
+	}
+
+	/* Zobrist key of a subcell, given its bitplane number and its cell's index y*width+x
+	 * (the SplitMix64 mixing function applied to the subcell's position) */
+	static long zobrist(int plane, long cell){
+		long z=((cell<<2|plane)+1)*0x9E3779B97F4A7C15L;
+		z=(z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z=(z^(z>>>27))*0x94D049BB133111EBL;
+		return z^(z>>>31);
+	}
+
+	/* Computes the hash again from every subcell, after the bitplanes have been written directly */
+	void rehash(){
+		hash=planeHash(top,TOP_PLANE)^planeHash(bottom,BOTTOM_PLANE)
+				^planeHash(left,LEFT_PLANE)^planeHash(right,RIGHT_PLANE);
+	}
+
+	/* XOR of the Zobrist keys of the subcells in state 1 in one bitplane */
+	private long planeHash(long[] plane, int number){
+		long result=0;
+		for(int i=0;i<plane.length;i++){
+			long bits=plane[i];
+			while(bits!=0){
+				int x=((i%wordsPerRow)<<6)+Long.numberOfTrailingZeros(bits);
+				result^=zobrist(number,(long)(i/wordsPerRow)*width+x);
+				bits&=bits-1;
+			}
+		}
+		return result;
+	}
+
+	/* Returns whether this grid holds the same configuration as another grid of the same size,
+	 * comparing the hashes first so that different configurations are usually rejected at once */
+	boolean sameAs(CellGrid other){
+		return hash==other.hash && Arrays.equals(top,other.top) && Arrays.equals(bottom,other.bottom)
+				&& Arrays.equals(left,other.left) && Arrays.equals(right,other.right);
+	}
+
+	/* Sets every subcell of every cell to the quiescent state */
+	void clear(){
+		Arrays.fill(top,0);
+		Arrays.fill(bottom,0);
+		Arrays.fill(left,0);
+		Arrays.fill(right,0);
+		hash=0;
+	}
+
+	/* Counts the number of cells whose state differs from the corresponding cell of
+	 * another grid of the same size */
+	long countDifferences(CellGrid other){
+		long count=0;
+		for(int i=0;i<top.length;i++){
+			count+=Long.bitCount((top[i]^other.top[i]) | (bottom[i]^other.bottom[i])
+					| (left[i]^other.left[i]) | (right[i]^other.right[i]));
+		}
+		return count;
+	}
+
+	/* Number of long words needed to hold the grid's configuration in packed form */
+	int packedLength(){
+		return (int)(((long)4*width*height+63)>>>6);
+	}
+
+	/* Writes the configuration into dest, starting at word offset, as one continuous string of
+	 * bits (each bitplane in turn, row by row, with no unused bits between rows) */
+	void pack(long[] dest, int offset){
+		Arrays.fill(dest,offset,offset+packedLength(),0);
+		long position=(long)offset<<6;
+		position=packPlane(top,dest,position);
+		position=packPlane(bottom,dest,position);
+		position=packPlane(left,dest,position);
+		packPlane(right,dest,position);
+	}
+
+	/* Reads a configuration written by pack from src, starting at word offset */
+	void unpack(long[] src, int offset){
+		unpack(src,offset,0);
+		rehash();
+	}
+
+	/* Reads a configuration written by pack from src, starting at word offset, whose hash is
+	 * already known (saving computing it again from every subcell) */
+	void unpack(long[] src, int offset, long knownHash){
+		long position=(long)offset<<6;
+		position=unpackPlane(top,src,position);
+		position=unpackPlane(bottom,src,position);
+		position=unpackPlane(left,src,position);
+		unpackPlane(right,src,position);
+		hash=knownHash;
+	}
+
+	/* Writes the bits of one bitplane into dest from the given bit position onwards,
+	 * and returns the bit position after them */
+	private long packPlane(long[] plane, long[] dest, long position){
+		for(int y=0;y<height;y++){
+			for(int w=0;w<wordsPerRow;w++){
+				int bits=Math.min(64,width-(w<<6));
+				int i=(int)(position>>>6);
+				int shift=(int)(position&63);
+				long value=plane[y*wordsPerRow+w];
+				dest[i]|=value<<shift;
+				if(shift+bits>64){
+					dest[i+1]|=value>>>(64-shift);
+				}
+				position+=bits;
+			}
+		}
+		return position;
+	}
+
+	/* Reads the bits of one bitplane from src from the given bit position onwards,
+	 * and returns the bit position after them */
+	private long unpackPlane(long[] plane, long[] src, long position){
+		for(int y=0;y<height;y++){
+			for(int w=0;w<wordsPerRow;w++){
+				int bits=Math.min(64,width-(w<<6));
+				int i=(int)(position>>>6);
+				int shift=(int)(position&63);
+				long value=src[i]>>>shift;
+				if(shift+bits>64){
+					value|=src[i+1]<<(64-shift);
+				}
+				if(bits<64){
+					value&=(1L<<bits)-1;
+				}
+				plane[y*wordsPerRow+w]=value;
+				position+=bits;
+			}
+		}
+		return position;
+	}
+
+	/* Copies the state of every cell from another grid of the same size */
+	void copyFrom(CellGrid other){
+		System.arraycopy(other.top,0,top,0,top.length);
+		System.arraycopy(other.bottom,0,bottom,0,bottom.length);
+		System.arraycopy(other.left,0,left,0,left.length);
+		System.arraycopy(other.right,0,right,0,right.length);
+		hash=other.hash;
+	}
+
+	/* Copies the cell x,y and its four neighbours (and the other cells sharing their words of the
+	 * bitplanes) from another grid of the same size, leaving the hash alone */
+	void copyAround(CellGrid other, int x, int y){
+		if(y>0){
+			copyWord(other,word(x,y-1));
+		}
+		if(y<height-1){
+			copyWord(other,word(x,y+1));
+		}
+		copyWord(other,word(Math.max(0,x-1),y));
+		copyWord(other,word(Math.min(width-1,x+1),y));
+	}
+
+	/* Copies one word of each bitplane from another grid of the same size */
+	private void copyWord(CellGrid other, int i){
+		top[i]=other.top[i];
+		bottom[i]=other.bottom[i];
+		left[i]=other.left[i];
+		right[i]=other.right[i];
+	}
+}
@@ -0,0 +1,43 @@
+import java.util.SplittableRandom;
+
+/* Draws positions in a list of cells uniformly at random using bounded integer draws (Lemire's
+ * method): a random 64-bit word is multiplied by the bound and the high half of the 128-bit product
+ * is the result. This needs no floating point, and a division only in the rare case that the low
+ * half falls in the small range which would otherwise bias the result, when the word is drawn
+ * again. Used by Frontier and CasEngine to choose among their enabled or candidate cells */
+public class CellSampler {
+
+	/* Returns a uniformly chosen number from 0 to bound-1 (bound must be positive) */
+	static long bounded(SplittableRandom random, long bound){
+		long word=random.nextLong();
+		long low=word*bound;
+		if(Long.compareUnsigned(low,bound)<0){
+
+			/* Reject words in the biased range, whose size is 2^64 mod bound */
+			long threshold=Long.remainderUnsigned(-bound,bound);
+			while(Long.compareUnsigned(low,threshold)<0){
+				word=random.nextLong();
+				low=word*bound;
+			}
+		}
+		return unsignedMultiplyHigh(word,bound);
+	}
+
+	/* Returns a uniformly chosen number from 0 to bound-1 (bound must be positive) - as above,
+	 * using a 32-bit word and a 64-bit product */
+	static int bounded(SplittableRandom random, int bound){
+		long product=(random.nextInt()&0xFFFFFFFFL)*bound;
+		if((product&0xFFFFFFFFL)<bound){
+			long threshold=(1L<<32)%bound;
+			while((product&0xFFFFFFFFL)<threshold){
+				product=(random.nextInt()&0xFFFFFFFFL)*bound;
+			}
+		}
+		return (int)(product>>>32);
+	}
+
+	/* High 64 bits of the unsigned 128-bit product of a and b */
+	static long unsignedMultiplyHigh(long a, long b){
+		return Math.multiplyHigh(a,b)+((a>>63)&b)+((b>>63)&a);
+	}
+}
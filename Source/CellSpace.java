@@ -1,33 +1,119 @@
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.util.Vector;
 
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
 
 /* Object representing the cell space. Strictly speaking it is a JPanel, but it contains
  * also a 2D array of cells (the edge cells are treated as never undergoing transitions
  * and being in the quiescent state which never changes), as well as logic handling mouse 
  * clicks, annotations, and execution of the STCA */
 @SuppressWarnings("serial")
-public class CellSpace extends JPanel implements MouseListener, Runnable, KeyListener{
-
-	/* 2D array of cell objects based on global variables */
-	Cell[][] grid = new Cell[GlobalAttributes.xCells][GlobalAttributes.yCells];
+public class CellSpace extends JPanel implements MouseListener, MouseMotionListener, MouseWheelListener, Runnable, KeyListener{
+
+	/* 2D array of cells - initially of the default size given by the global variables,
+	 * but replaced whenever a configuration of another size is loaded or created */
+	volatile CellGrid grid = new CellGrid(GlobalAttributes.xCells,GlobalAttributes.yCells);
+
+	/* Cells of the cell space at which a transition can currently take place - replaced
+	 * together with the grid, and only read or changed while holding the grid's monitor */
+	volatile Frontier frontier = new Frontier(grid);
+
+	/* Firing rates of the cells, and the scheduler using them in the timed execution mode (created
+	 * when first needed, and dropped whenever the cell space is replaced or cleared) */
+	RateMap rates = new RateMap(grid.width,grid.height);
+	volatile TimedScheduler scheduler;
+
+	/* When the simulated time was last shown (System.nanoTime), and the simulated time passed
+	 * during the last transition in the timed mode */
+	long clockShown;
+	double elapsed;
+
+	/* Execution mode of the last transition - the frontier is only kept up to date in the single
+	 * cell and maximal set modes, and the scheduler in the timed mode, so whichever is about to be
+	 * used is rebuilt when the mode changes (only used by the updater thread) */
+	int lastMode=GlobalAttributes.mode;
+
+	/* Copies of the cell space for painting, published at most FRAME_RATE times a second while
+	 * running (and after every edit), so that painting never holds the cell space's monitor */
+	static final int FRAME_RATE=60;
+	final SnapshotBuffer snapshots = new SnapshotBuffer();
+
+	/* When a copy was last published (System.nanoTime), whether the cell space has changed
+	 * since, and the cells which have undergone transitions since (all only used by the
+	 * updater thread) */
+	long published;
+	boolean changed=false;
+	long[] dirty=new long[SnapshotBuffer.MAX_DIRTY];
+	int dirtyCount=0;
+
+	/* Image of the whole cell space, kept up to date by drawing just the cells which have
+	 * changed (null if the cell space is too large, in which case the visible cells are
+	 * drawn directly), and the images the cells are drawn with (both only used while
+	 * painting) */
+	static final long MAX_IMAGE_PIXELS=4096*4096;
+	BufferedImage image;
+	CellSprites sprites;
+
+	/* Zoom of the view: at 0 cells are GlobalAttributes.cellsize pixels wide, and each step in or
+	 * out doubles or halves that, down to one pixel per cell, after which each step out makes
+	 * every pixel show a block of twice as many cells across (see ActivityMap). Cells narrower
+	 * than MIN_SPRITE_SIZE, or blocks of cells, are drawn as the shade between the two state
+	 * colours of their proportion of subcells in state 1 (or green if a transition has taken
+	 * place in them since the last paint). Only changed on the event dispatch thread */
+	static final int MAX_ZOOM=2;
+	static final int MIN_SPRITE_SIZE=4;
+	int zoom=0;
+
+	/* Width of a cell in pixels, and the level of the blocks of cells each pixel shows (0 if
+	 * every cell is at least a pixel wide), for the current zoom */
+	int cellPixels=GlobalAttributes.cellsize;
+	int level=0;
+
+	/* Counts of the subcells and transitions of blocks of cells, created when the view is first
+	 * zoomed out far enough to use it (and dropped whenever the cell space is replaced), and
+	 * changed only while holding the grid's monitor. It is read while painting without holding
+	 * the monitor, as the worst this can do is show a block's count a frame late */
+	volatile ActivityMap activity;
+
+	/* Image of the visible part of the cell space when zoomed out, and the transition counts
+	 * of the blocks of the shown level of the activity map when last painted (all only used
+	 * while painting) */
+	BufferedImage blockImage;
+	int[] shownTransitions;
+	ActivityMap shownActivity;
+	int shownLevel;
+
+	/* Where the view is being dragged from (with a button other than the first), or null */
+	Point dragStart;
+
+	/* Random number stream used to choose cells (replaced while paused when the seed is set) */
+	SplittableRandom random = RandomStreams.stream(RandomStreams.SIMULATION);
 
 	/* Collection of annotations and their coordinates on the cell space */
 	Vector<String> annotationLabels = new Vector<String>();
@@ -71,21 +157,22 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 	@Override
 	public void run() {
 
-		/* Stores 4 random numbers */
-		float random1;
-		float random2;
-		float randomX;
-		float randomY;
+		/* Index (y*width+x) of the cell which undergoes a transition */
+		long cell;
 
-		/* Variables for choosing a random cell */
-		int x;
-		int y;
+		/* The frontier of the cell space being updated */
+		Frontier frontier;
 
 		/* Infinitely do the following until the program closes */
 		while(true){
 
 			/* Gains control of this cell space's object monitor */
 			synchronized (this) {
+
+				/* Make sure the final state is shown before pausing */
+				if(shouldPause && changed){
+					publish(this.frontier.grid);
+				}
 				
 				/* Until the system is unpaused  */
 				while (shouldPause){
@@ -99,61 +186,344 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 				}
 			}
 
-			/* Select 2 random float values between 0 and 1 */
-			random1=GlobalAttributes.random.nextFloat();
-			random2=GlobalAttributes.random.nextFloat();
-
-			/* Use the 2 above values to picks random float values between
-			 * 0 and the no. of cells in the x direction, and
-			 * 0 and the no. of cells in the y direction */
-			randomX=random1 * (float)(GlobalAttributes.xCells);
-			randomY=random2 * (float)(GlobalAttributes.yCells);
-
-			/* Cast these floats to ints, to result in a set of coordinates
-			 * of a random cell in the 2D array */
-			x=(int)randomX;
-			y=(int)randomY;
-
-			/* Execute a transition for the selected cell and repaint the grid
-			 * ONLY IF it is not on one of the four edges of the grid */
-			if(x>0 && x<GlobalAttributes.xCells-1 && y>0 && y<GlobalAttributes.yCells-1){
-				synchronized(grid){
-					ApplyRule.executeTransition(x,y,grid);
+			/* Retrieve the current frontier, and with it the cell space (they are only
+			 * replaced while paused) */
+			frontier=this.frontier;
+
+			/* Execute a transition at a uniformly chosen cell out of those where one can
+			 * take place (edge cells are never part of the frontier) - or in the maximal
+			 * set mode, at a random maximal set of them which are not next to each other -
+			 * rebuilding the frontier first if the STCA has been changed since it was built */
+			synchronized(frontier.grid){
+				if(GlobalAttributes.mode!=lastMode){
+					if(GlobalAttributes.mode==2){
+						if(scheduler!=null && scheduler.grid==frontier.grid){
+							scheduler.rebuild(random);
+						}
+					}
+					else if(lastMode==2){
+						frontier.rebuild();
+					}
+					lastMode=GlobalAttributes.mode;
+				}
+				if(frontier.automata!=GlobalAttributes.automata){
+					frontier.rebuild();
+				}
+				ActivityMap activity=this.activity;
+				if(activity!=null && activity.grid!=frontier.grid){
+					activity=null;
+				}
+				if(GlobalAttributes.mode==1){
+					int fired=frontier.fireMaximal(random);
+					cell=fired>0 ? 0 : -1;
+					addDirty(frontier.order,fired);
+					for(int k=0;activity!=null && k<fired;k++){
+						activity.fired(frontier.order[k]);
+					}
+				}
+				else{
+					if(GlobalAttributes.mode==2){
+						cell=fireTimed(frontier.grid);
+					}
+					else{
+						cell=frontier.fire(random);
+					}
+					if(activity!=null && cell>=0){
+						activity.fired(cell);
+					}
 				}
-				lastUpdatedCellXPosition=x;
-				lastUpdatedCellYPosition=y;
-				repaint();
+			}
+
+			/* Record the change ONLY IF a transition took place (marking the cell, unless many
+			 * took place at once) */
+			if(cell>=0){
+				if(GlobalAttributes.mode==1){
+					lastUpdatedCellXPosition=-1;
+				}
+				else{
+					lastUpdatedCellXPosition=(int)(cell%frontier.grid.width);
+					lastUpdatedCellYPosition=(int)(cell/frontier.grid.width);
+					addDirty(cell);
+				}
+				changed=true;
+			}
+
+			/* Show the changes, at most FRAME_RATE times a second (or straight away if no more
+			 * transitions can take place) */
+			if(changed && (System.nanoTime()-published>=1000000000L/FRAME_RATE || cell<0)){
+				publish(frontier.grid);
 			}
 
 			/* Sleep for the number of milliseconds indicated by the
-			 * global variable (modifiable in the GUI) */
+			 * global variable (modifiable in the GUI) - in the timed mode,
+			 * that many milliseconds per unit of simulated time passed */
 			try {
-				Thread.sleep(GlobalAttributes.speed);
+				if(GlobalAttributes.mode==2 && cell>=0){
+					Thread.sleep((long)(GlobalAttributes.speed*elapsed));
+				}
+				else{
+					Thread.sleep(GlobalAttributes.speed);
+				}
 			} catch (InterruptedException e) {
 			}
 		}
 	}
 
-	/* Constructor */
-	public CellSpace(){
-		super();
+	/* Draws the cell at the given coordinates of a grid, by copying the sprite of its state */
+	private void drawCell(Graphics g, CellGrid grid, int i, int j){
+		sprites.draw(g,grid.get(i,j),i*sprites.cellsize,j*sprites.cellsize);
+	}
+
+	/* Number of pixels across a cell at the current zoom (less than one if zoomed out further
+	 * than one pixel per cell) */
+	double pixelsPerCell(){
+		return level>0 ? 1.0/(1<<level) : cellPixels;
+	}
+
+	/* Changes the zoom by the given number of steps (positive to zoom in), keeping the point x,y
+	 * of the cell space where it is in the view */
+	void zoom(int steps, int x, int y){
+		CellGrid grid=this.grid;
+		int newZoom=Math.min(zoom+steps,MAX_ZOOM);
+		double before=pixelsPerCell();
+		setZoom(newZoom);
+
+		/* Never zoom out beyond a single pixel for the whole cell space */
+		while(level>0 && ((grid.width-1)>>level)==0 && ((grid.height-1)>>level)==0){
+			setZoom(++newZoom);
+		}
+		double after=pixelsPerCell();
+
+		/* Move the view so the same point stays under the mouse */
+		if(getParent() instanceof JViewport){
+			JViewport viewport=(JViewport)getParent();
+			Point position=viewport.getViewPosition();
+			updateSize();
+			setSize(getPreferredSize());
+			viewport.setViewPosition(new Point(
+					(int)Math.max(0,x*after/before-(x-position.x)),
+					(int)Math.max(0,y*after/before-(y-position.y))));
+		}
+		else{
+			updateSize();
+		}
+		repaint();
+	}
+
+	/* Sets the zoom, and the cell width and block level which follow from it */
+	private void setZoom(int newZoom){
+		zoom=newZoom;
+		int cellsize=GlobalAttributes.cellsize;
+		if(zoom>=0){
+			cellPixels=cellsize<<zoom;
+			level=0;
+		}
+		else{
+
+			/* Halve the cells' width until it is one pixel, then double the blocks' width */
+			int halvings=31-Integer.numberOfLeadingZeros(cellsize);
+			cellPixels=Math.max(1,cellsize>>-zoom);
+			level=Math.max(0,-zoom-halvings);
+		}
+	}
+
+	/* Sizes the panel to fit the cell space at the current zoom */
+	void updateSize(){
+		long width;
+		long height;
+		if(level>0){
+			width=((grid.width-1)>>level)+1;
+			height=((grid.height-1)>>level)+1;
+		}
+		else{
+			width=(long)grid.width*cellPixels;
+			height=(long)grid.height*cellPixels;
+		}
+		setPreferredSize(new Dimension((int)Math.min(width,Integer.MAX_VALUE),(int)Math.min(height,Integer.MAX_VALUE)));
+		revalidate();
+	}
 
-		/* Create the 2D array of cells and set all subcells across the entire cell space
-		 * to the quiescent state */
-		for (int i=0; i<grid.length;i++){
-			for(int j=0; j<grid[i].length;j++){
-				grid[i][j]=new Cell();
-				grid[i][j].xPosition=i;
-				grid[i][j].yPosition=j;
-				grid[i][j].topSubcellValue=0;
-				grid[i][j].bottomSubcellValue=0;
-				grid[i][j].leftSubcellValue=0;
-				grid[i][j].rightSubcellValue=0;
+	/* Draws the part of the cell space within the given area when zoomed out too far to draw its cells,
+	 * each cell or block of cells as a shade of the state colours (or green if a transition has
+	 * taken place in it since the last paint), from the activity map - or, for blocks smaller than
+	 * those it keeps, from the snapshot being painted, marking the blocks of its dirty cells (or of
+	 * the activity map's smallest blocks with new transitions, if every cell is dirty) */
+	private void drawBlocks(Graphics2D g, Rectangle area, SnapshotBuffer.Snapshot snapshot){
+
+		/* Count the blocks of the cell space if they have not been counted already */
+		ActivityMap activity=this.activity;
+		CellGrid live=this.grid;
+		if(activity==null || activity.grid!=live){
+			synchronized(live){
+				activity=new ActivityMap(live);
+				this.activity=activity;
 			}
 		}
+		int kept=Math.max(level,ActivityMap.BASE);
+		if(activity!=shownActivity || kept!=shownLevel){
+			shownActivity=activity;
+			shownLevel=kept;
+			shownTransitions=activity.transitions(kept);
+		}
+
+		if(blockImage==null || blockImage.getWidth()!=area.width || blockImage.getHeight()!=area.height){
+			blockImage=new BufferedImage(area.width,area.height,BufferedImage.TYPE_INT_RGB);
+		}
+		int[] pixels=((DataBufferInt)blockImage.getRaster().getDataBuffer()).getData();
+		CellGrid grid=level<ActivityMap.BASE ? snapshot.grid : live;
+		int columns=((grid.width-1)>>level)+1;
+		int rows=((grid.height-1)>>level)+1;
+
+		/* Each block is blockPixels pixels across (only more than one at level 0) */
+		int blockPixels=level>0 ? 1 : cellPixels;
+		int firstX=area.x/blockPixels;
+		int firstY=area.y/blockPixels;
+		int lastX=Math.min(columns-1,(area.x+area.width-1)/blockPixels);
+		int lastY=Math.min(rows-1,(area.y+area.height-1)/blockPixels);
+		int rgb0=GlobalAttributes.state0.getRGB();
+		int rgb1=GlobalAttributes.state1.getRGB();
+		int green=Color.GREEN.getRGB();
+		Arrays.fill(pixels,0xffffff);
+		for(int j=firstY;j<=lastY;j++){
+			for(int i=firstX;i<=lastX;i++){
+				int colour;
+				if(level<ActivityMap.BASE){
+					colour=shade(rgb0,rgb1,ActivityMap.count(grid,level,i,j),4*ActivityMap.cells(grid,level,i,j));
+				}
+				else{
+					int block=j*columns+i;
+					int transitions=activity.transitions(level,block);
+					if(transitions!=shownTransitions[block]){
+						shownTransitions[block]=transitions;
+						colour=green;
+					}
+					else{
+						colour=shade(rgb0,rgb1,activity.states(level,block),4*ActivityMap.cells(grid,level,i,j));
+					}
+				}
+				fillPixels(pixels,area,i*blockPixels,j*blockPixels,(i+1)*blockPixels,(j+1)*blockPixels,colour);
+			}
+		}
+
+		/* Mark the small blocks in which transitions have taken place: those of the dirty cells, or
+		 * if there are too many, the visible blocks of the activity map's smallest level whose
+		 * transition counts have changed (which are brought up to date either way) */
+		if(level<ActivityMap.BASE && grid.width==live.width && grid.height==live.height){
+			int keptPixels=blockPixels<<(ActivityMap.BASE-level);
+			int keptColumns=activity.widths[kept];
+			for(int j=firstY*blockPixels/keptPixels;j<=lastY*blockPixels/keptPixels;j++){
+				for(int i=firstX*blockPixels/keptPixels;i<=lastX*blockPixels/keptPixels;i++){
+					int block=j*keptColumns+i;
+					int transitions=activity.transitions(kept,block);
+					if(transitions!=shownTransitions[block]){
+						shownTransitions[block]=transitions;
+						if(snapshot.full){
+							fillPixels(pixels,area,i*keptPixels,j*keptPixels,(i+1)*keptPixels,(j+1)*keptPixels,green);
+						}
+					}
+				}
+			}
+		}
+		if(level<ActivityMap.BASE && !snapshot.full){
+			for(int k=0;k<snapshot.dirtyCount;k++){
+				int i=(int)(snapshot.dirty[k]%grid.width)>>level;
+				int j=(int)(snapshot.dirty[k]/grid.width)>>level;
+				fillPixels(pixels,area,i*blockPixels,j*blockPixels,(i+1)*blockPixels,(j+1)*blockPixels,green);
+			}
+		}
+		g.drawImage(blockImage,area.x,area.y,null);
+	}
+
+	/* Fills the pixels from left,top up to right,bottom of the cell space (in the panel's
+	 * coordinates) which lie within the given area of the image with the given colour */
+	private static void fillPixels(int[] pixels, Rectangle area, int left, int top, int right, int bottom, int colour){
+		left=Math.max(left,area.x)-area.x;
+		right=Math.min(right,area.x+area.width)-area.x;
+		top=Math.max(top,area.y)-area.y;
+		bottom=Math.min(bottom,area.y+area.height)-area.y;
+		for(int y=top;y<bottom;y++){
+			Arrays.fill(pixels,y*area.width+left,y*area.width+right,colour);
+		}
+	}
+
+	/* Returns the colour count/total of the way from colour rgb0 to colour rgb1 */
+	private static int shade(int rgb0, int rgb1, int count, int total){
+		int colour=0;
+		for(int shift=0;shift<24;shift+=8){
+			int from=(rgb0>>shift)&0xff;
+			int to=(rgb1>>shift)&0xff;
+			colour|=(from+(to-from)*count/total)<<shift;
+		}
+		return colour;
+	}
+
+	/* Publishes a copy of the given cell space for painting, with the cells which have undergone
+	 * transitions since the last one, and asks for it to be painted */
+	void publish(CellGrid grid){
+		synchronized(grid){
+			snapshots.publish(grid,dirty,dirtyCount,dirtyCount>dirty.length);
+		}
+		published=System.nanoTime();
+		changed=false;
+		dirtyCount=0;
+		repaint();
+	}
+
+	/* Records that a cell has undergone a transition */
+	private void addDirty(long cell){
+		if(dirtyCount<dirty.length){
+			dirty[dirtyCount]=cell;
+		}
+		dirtyCount++;
+	}
+
+	/* Records that the first count of the given cells have undergone transitions */
+	private void addDirty(long[] cells, int count){
+		if(dirtyCount+count<=dirty.length){
+			System.arraycopy(cells,0,dirty,dirtyCount,count);
+		}
+		dirtyCount+=count;
+	}
+
+	/* Applies the next transition in simulated time (called holding the grid's monitor), creating
+	 * the scheduler first if needed and showing the time now and again. Returns the index of the
+	 * fired cell, or -1 if no cell will ever undergo a transition */
+	private long fireTimed(CellGrid grid){
+		TimedScheduler scheduler=this.scheduler;
+		if(scheduler==null || scheduler.grid!=grid){
+			scheduler=new TimedScheduler(grid,rates,random);
+			this.scheduler=scheduler;
+		}
+		else if(scheduler.automata!=GlobalAttributes.automata){
+			scheduler.rebuild(random);
+		}
+		double before=scheduler.time;
+		long cell=scheduler.fire(random);
+		elapsed=scheduler.time-before;
+
+		/* Show the time at most ten times a second (or straight away if nothing else will happen) */
+		long now=System.nanoTime();
+		if(now-clockShown>100000000L || cell<0){
+			clockShown=now;
+			final String text=String.format("Simulated time: %.3f (%d steps)",scheduler.time,scheduler.steps);
+			SwingUtilities.invokeLater(new Runnable(){
+				@Override
+				public void run(){
+					MainFrame.clock.setText(text);
+				}
+			});
+		}
+		return cell;
+	}
+
+	/* Constructor */
+	public CellSpace(){
+		super();
 
 		/* Add mouse/keyboard listeners as this class */
 		this.addMouseListener(this);
+		this.addMouseMotionListener(this);
+		this.addMouseWheelListener(this);
 		this.addKeyListener(this);
 
 		/* Let the last character of the currently typed annotation (non-existant at this point)
@@ -161,6 +531,9 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 		 * the annotation which is currently being typed */
 		currentAnnotationLabel.add(new Character('|'));
 
+		/* Publish the initial cell space to be painted */
+		snapshots.publish(grid);
+
 		/* Start the execution thread (it won't do much unless run=true) */
 		updaterThread.start();
 	}
@@ -174,82 +547,98 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 		/* Clear the drawing area (including all cell division lines */
 		g2.clearRect(0, 0, this.getWidth(), this.getHeight());
 
-		/* Draw all cells */
-		synchronized(grid){
-			for (int i=0; i<grid.length;i++){
-				for(int j=0; j<grid[i].length;j++){
-					Cell current=grid[i][j];
-					
-					int cellsize = GlobalAttributes.cellsize;
-
-					/* Calculate top triangle subcell vertices' locations in the cell space */
-					int[] xPoints = {(current.xPosition*cellsize),(current.xPosition*cellsize+cellsize/2),((current.xPosition+1)*cellsize)};
-					int[] yPoints={(current.yPosition*cellsize),(current.yPosition*cellsize+cellsize/2),(current.yPosition*cellsize)};
-
-					/* Calculate bottom triangle subcell vertices' locations in the cell space */
-					int[] xPoints2 = {(current.xPosition*cellsize),(current.xPosition*cellsize+cellsize/2),((current.xPosition+1)*cellsize)};
-					int[] yPoints2={((current.yPosition+1)*cellsize),(current.yPosition*cellsize+cellsize/2),((current.yPosition+1)*cellsize)};
+		/* Take the latest copy of the cell space, which the updater thread does not change */
+		SnapshotBuffer.Snapshot snapshot=snapshots.latest();
+		CellGrid grid=snapshot.grid;
+		int cellsize=cellPixels;
+		long imageWidth=(long)grid.width*cellsize+1;
+		long imageHeight=(long)grid.height*cellsize+1;
+		Rectangle clip=g2.getClipBounds();
+		if(clip==null){
+			clip=new Rectangle(0,0,this.getWidth(),this.getHeight());
+		}
 
-					/* Calculate left triangle subcell vertices' locations in the cell space */
-					int[] xPoints3 = {(current.xPosition*cellsize),(current.xPosition*cellsize+cellsize/2),(current.xPosition*cellsize)};
-					int[] yPoints3={(current.yPosition*cellsize),(current.yPosition*cellsize+cellsize/2),((current.yPosition+1)*cellsize)};
+		/* Sprites of the cells at the current zoom */
+		boolean redraw=sprites==null || !sprites.matches(cellsize);
+		if(redraw && cellsize>=MIN_SPRITE_SIZE){
+			sprites=new CellSprites(cellsize,GlobalAttributes.state0,GlobalAttributes.state1);
+		}
 
-					/* Calculate right triangle subcell vertices' locations in the cell space */
-					int[] xPoints4 = {((current.xPosition+1)*cellsize),(current.xPosition*cellsize+cellsize/2),((current.xPosition+1)*cellsize)};
-					int[] yPoints4={(current.yPosition*cellsize),(current.yPosition*cellsize+cellsize/2),((current.yPosition+1)*cellsize)};
+		/* If zoomed out too far to draw cells, draw the shades of the visible cells or blocks
+		 * (the image is then drawn again in full when zoomed back in) */
+		if(cellsize<MIN_SPRITE_SIZE || level>0){
+			image=null;
+			clip=clip.intersection(new Rectangle(0,0,this.getWidth(),this.getHeight()));
+			if(!clip.isEmpty()){
+				drawBlocks(g2,clip,snapshot);
+			}
+			snapshot.clearDirty();
+		}
 
-					/* Set the colour depending on the state of the top subcell, then paint it */
-					if(current.topSubcellValue==1){
-						g.setColor(GlobalAttributes.state1);
-					}
-					else{
-						g.setColor(GlobalAttributes.state0);
-					}
-					g.fillPolygon(xPoints,yPoints,3);
+		/* If the cell space is small enough to keep an image of, bring the image up to date
+		 * and copy it to the screen */
+		else if(imageWidth*imageHeight<=MAX_IMAGE_PIXELS){
 
-					/* Set the colour depending on the state of the bottom subcell, then paint it */
-					if(current.bottomSubcellValue==1){
-						g.setColor(GlobalAttributes.state1);
-					}
-					else{
-						g.setColor(GlobalAttributes.state0);
+			/* Draw every cell into a new image if the size or colours have changed, or the copy
+			 * says so */
+			if(image==null || image.getWidth()!=imageWidth || image.getHeight()!=imageHeight || redraw){
+				image=new BufferedImage((int)imageWidth,(int)imageHeight,BufferedImage.TYPE_INT_RGB);
+				snapshot.full=true;
+			}
+			Graphics2D imageGraphics=image.createGraphics();
+			if(snapshot.full){
+				for(int i=0;i<grid.width;i++){
+					for(int j=0;j<grid.height;j++){
+						drawCell(imageGraphics,grid,i,j);
 					}
-					g.fillPolygon(xPoints2,yPoints2 , 3);
+				}
+			}
 
-					/* Set the colour depending on the state of the left subcell, then paint it */
-					if(current.leftSubcellValue==1){
-						g.setColor(GlobalAttributes.state1);
+			/* Otherwise draw just the cells which have changed since the last paint, and their
+			 * neighbours (whose subcells a transition also changes) */
+			else{
+				for(int k=0;k<snapshot.dirtyCount;k++){
+					int i=(int)(snapshot.dirty[k]%grid.width);
+					int j=(int)(snapshot.dirty[k]/grid.width);
+					drawCell(imageGraphics,grid,i,j);
+					if(j>0){
+						drawCell(imageGraphics,grid,i,j-1);
 					}
-					else{
-						g.setColor(GlobalAttributes.state0);
+					if(j<grid.height-1){
+						drawCell(imageGraphics,grid,i,j+1);
 					}
-					g.fillPolygon(xPoints3,yPoints3 , 3);
-
-					/* Set the colour depending on the state of the right subcell, then paint it */
-					if(current.rightSubcellValue==1){
-						g.setColor(GlobalAttributes.state1);
+					if(i>0){
+						drawCell(imageGraphics,grid,i-1,j);
 					}
-					else{
-						g.setColor(GlobalAttributes.state0);
+					if(i<grid.width-1){
+						drawCell(imageGraphics,grid,i+1,j);
 					}
-					g.fillPolygon(xPoints4,yPoints4 , 3);
-
-					/* Set the colour to black and draw the black outline of the
-					 * square main cell in the correct location in the cellspace */
-					g.setColor(Color.BLACK);
-					g.drawRect(current.xPosition*cellsize, current.yPosition*cellsize, cellsize, cellsize);
+				}
+			}
+			imageGraphics.dispose();
+			snapshot.clearDirty();
+			g2.drawImage(image,0,0,null);
+		}
 
-					/* Draw the black outlines of the top and bottom subcells also
-					 * This gives the X in the cell which divides the four subcells */
-					g.drawPolygon(xPoints,yPoints , 3);
-					g.drawPolygon(xPoints2,yPoints2 , 3);			
+		/* Otherwise draw the cells which lie within the area being painted, so that only
+		 * the visible part of a large cell space is drawn */
+		else{
+			image=null;
+			snapshot.clearDirty();
+			int firstX=Math.max(0,clip.x/cellsize);
+			int firstY=Math.max(0,clip.y/cellsize);
+			int lastX=Math.min(grid.width-1,(clip.x+clip.width)/cellsize);
+			int lastY=Math.min(grid.height-1,(clip.y+clip.height)/cellsize);
+			for (int i=firstX; i<=lastX;i++){
+				for(int j=firstY; j<=lastY;j++){
+					drawCell(g2,grid,i,j);
 				}
 			}
 		}
 
 		/* If a cell has been previously updated (so any state after the very initial
-		 * state of the cell space) */
-		if(lastUpdatedCellXPosition!=-1){
+		 * state of the cell space), and cells are drawn individually */
+		if(lastUpdatedCellXPosition!=-1 && level==0 && cellsize>=MIN_SPRITE_SIZE){
 
 			/* Draw a thick green square around the location of the
 			 * last cell to be updated (has the effect of highlighting the
@@ -257,10 +646,10 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 			g2.setColor(Color.GREEN);
 			Stroke oldStroke = g2.getStroke();
 			g2.setStroke(new BasicStroke(5));
-			g2.drawRect(lastUpdatedCellXPosition*GlobalAttributes.cellsize,
-					lastUpdatedCellYPosition*GlobalAttributes.cellsize, 
-					GlobalAttributes.cellsize, 
-					GlobalAttributes.cellsize);
+			g2.drawRect(lastUpdatedCellXPosition*cellsize,
+					lastUpdatedCellYPosition*cellsize, 
+					cellsize, 
+					cellsize);
 			g2.setStroke(oldStroke);
 		}
 
@@ -269,9 +658,9 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 		g2.setFont(new Font("SansSerif",Font.BOLD,16));
 
 		/* Draw all stored annotations over the cell space,
-		 * at the appropriate coordinates */
+		 * at the appropriate coordinates (which are kept as at zoom 0) */
 		for(int i=0;i<annotationLabels.size();i++){
-			g2.drawString(annotationLabels.get(i), annotationCoordinates.get(i*2), annotationCoordinates.get(i*2+1));
+			g2.drawString(annotationLabels.get(i), toView(annotationCoordinates.get(i*2)), toView(annotationCoordinates.get(i*2+1)));
 		}
 
 		/* If the user is currently typing something */
@@ -284,29 +673,55 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 			for(int i=0;i<chars.length;i++){
 				chars[i]=currentAnnotationLabel.get(i).charValue();
 			}
-			g2.drawChars(chars, 0, chars.length, currentAnnotationLocation[0], currentAnnotationLocation[1]);
+			g2.drawChars(chars, 0, chars.length, toView(currentAnnotationLocation[0]), toView(currentAnnotationLocation[1]));
 		}
 	}
 
+	/* Converts a coordinate at zoom 0 (as annotations are kept) to the current zoom */
+	private int toView(int coordinate){
+		return (int)(coordinate*pixelsPerCell()/GlobalAttributes.cellsize);
+	}
+
+	/* Converts a coordinate at the current zoom to zoom 0 */
+	private int fromView(int coordinate){
+		return (int)(coordinate*GlobalAttributes.cellsize/pixelsPerCell());
+	}
+
 	/* Listens for mouse clicks on the cell space */
 	@Override
 	public void mouseClicked(MouseEvent e) {
 
+		/* Only the first button changes the cell space (the others drag the view) */
+		if(e.getButton()!=MouseEvent.BUTTON1){
+			return;
+		}
+
 		/* If the program is not in annotate mode */
 		if(GlobalAttributes.annotate==0){
 
+			/* Cells cannot be changed when too small to see their subcells */
+			int cellsize=cellPixels;
+			if(level>0 || cellsize<MIN_SPRITE_SIZE){
+				return;
+			}
+
 			/* Retrieve the position of the mouse 
 			 * click within the cell space */
 			int x = e.getX();
 			int y = e.getY();
 
 			/* Infer the coordinates of the cell which was clicked */
-			int cellX = x/GlobalAttributes.cellsize;
-			int cellY= y/GlobalAttributes.cellsize;
+			int cellX = x/cellsize;
+			int cellY= y/cellsize;
+
+			/* Ignore clicks outside of the cell space (the panel may be larger than it) */
+			if(cellX>=grid.width || cellY>=grid.height){
+				return;
+			}
 
 			/* Further infer the position of the click *within* cell */ 
-			int posX = x-(GlobalAttributes.cellsize*cellX);
-			int posY = y-(GlobalAttributes.cellsize*cellY);
+			int posX = x-(cellsize*cellX);
+			int posY = y-(cellsize*cellY);
 
 			synchronized(grid){
 			
@@ -315,14 +730,14 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 	
 					/* If the mouse is in the bottom subcell, toggle the state of
 					 * the bottom subcell (it cycles through all states) */
-					if(GlobalAttributes.cellsize-posX < posY){
-						grid[cellX][cellY].bottomSubcellValue=(grid[cellX][cellY].bottomSubcellValue+1)%GlobalAttributes.noOfStates;
+					if(cellsize-posX < posY){
+						grid.setBottom(cellX,cellY,(grid.getBottom(cellX,cellY)+1)%GlobalAttributes.noOfStates);
 					}
 	
 					/* If the mouse is in the left subcell, toggle the state of
 					 * the left subcell (it cycles through all states) */
 					else{
-						grid[cellX][cellY].leftSubcellValue=(grid[cellX][cellY].leftSubcellValue+1)%GlobalAttributes.noOfStates;	
+						grid.setLeft(cellX,cellY,(grid.getLeft(cellX,cellY)+1)%GlobalAttributes.noOfStates);	
 					}
 				}
 	
@@ -331,17 +746,27 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 	
 					/* If the mouse is in the right subcell, toggle the state of
 					 * the right subcell (it cycles through all states) */
-					if(GlobalAttributes.cellsize-posX < posY){
-						grid[cellX][cellY].rightSubcellValue=(grid[cellX][cellY].rightSubcellValue+1)%GlobalAttributes.noOfStates;
+					if(cellsize-posX < posY){
+						grid.setRight(cellX,cellY,(grid.getRight(cellX,cellY)+1)%GlobalAttributes.noOfStates);
 					}
 	
 					/* If the mouse is in the top subcell, toggle the state of
 					 * the top subcell (it cycles through all states) */
 					else{
-						grid[cellX][cellY].topSubcellValue=(grid[cellX][cellY].topSubcellValue+1)%GlobalAttributes.noOfStates;
+						grid.setTop(cellX,cellY,(grid.getTop(cellX,cellY)+1)%GlobalAttributes.noOfStates);
 					}
 				}
 
+				/* The edited cell and its neighbours may have become enabled or disabled */
+				frontier.update(cellX,cellY);
+				if(scheduler!=null && scheduler.grid==grid){
+					scheduler.update(cellX,cellY,random);
+				}
+				if(activity!=null && activity.grid==grid){
+					activity.recount(cellX,cellY);
+				}
+				snapshots.publish(grid,new long[]{(long)cellY*grid.width+cellX},1,false);
+
 			}
 		}
 
@@ -355,8 +780,8 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 				 * the user to start typing an annotation at that
 				 * location - the keyboard listener will subsequently
 				 * begin recording the input from the keyboard */
-				currentAnnotationLocation[0] = e.getX();
-				currentAnnotationLocation[1] = e.getY();
+				currentAnnotationLocation[0] = fromView(e.getX());
+				currentAnnotationLocation[1] = fromView(e.getY());
 				this.requestFocus();
 				currentlyTyping=true;
 			}
@@ -371,9 +796,9 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 		/* If the software is in "remove annotation" mode */
 		else if(GlobalAttributes.annotate==2){
 
-			/* Retrieve the location of the click */
-			int x = e.getX();
-			int y = e.getY();
+			/* Retrieve the location of the click (as at zoom 0, like the annotations) */
+			int x = fromView(e.getX());
+			int y = fromView(e.getY());
 
 			/* Variables for storing the bounding box of the current
 			 * annotation we are checking for clicks */
@@ -416,6 +841,46 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 		this.repaint();
 	}
 
+	/* Starts dragging the view with any button but the first */
+	@Override
+	public void mousePressed(MouseEvent e) {
+		if(e.getButton()!=MouseEvent.BUTTON1){
+			dragStart=e.getPoint();
+		}
+	}
+
+	/* Stops dragging the view */
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		dragStart=null;
+	}
+
+	/* Moves the view with the mouse while dragging, keeping the point first pressed under it */
+	@Override
+	public void mouseDragged(MouseEvent e) {
+		if(dragStart!=null && getParent() instanceof JViewport){
+			JViewport viewport=(JViewport)getParent();
+			Point position=viewport.getViewPosition();
+			int x=Math.max(0,Math.min(position.x+dragStart.x-e.getX(),getWidth()-viewport.getWidth()));
+			int y=Math.max(0,Math.min(position.y+dragStart.y-e.getY(),getHeight()-viewport.getHeight()));
+			viewport.setViewPosition(new Point(x,y));
+		}
+	}
+
+	/* Zooms with the mouse wheel while control is held, otherwise lets the view scroll */
+	@Override
+	public void mouseWheelMoved(MouseWheelEvent e) {
+		if(e.isControlDown()){
+			zoom(-e.getWheelRotation(),e.getX(),e.getY());
+		}
+		else{
+			JScrollPane view=(JScrollPane)SwingUtilities.getAncestorOfClass(JScrollPane.class,this);
+			if(view!=null){
+				view.dispatchEvent(SwingUtilities.convertMouseEvent(this,e,view));
+			}
+		}
+	}
+
 	/* Unused mouse listener methods */
 	@Override
 	public void mouseEntered(MouseEvent arg0) {
@@ -424,23 +889,19 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 	public void mouseExited(MouseEvent arg0) {
 	}
 	@Override
-	public void mousePressed(MouseEvent arg0) {
-	}
-	@Override
-	public void mouseReleased(MouseEvent arg0) {
+	public void mouseMoved(MouseEvent arg0) {
 	}
 
 	/* Iterates through all cells and sets all subcells to state 0
 	 * (quiescent state), as well as clearing all annotations and
 	 * their coordinates */
 	public void clear(){
-		for(int i=0;i<grid.length;i++){
-			for(int j=0;j<grid[i].length;j++){
-				grid[i][j].topSubcellValue=0;
-				grid[i][j].bottomSubcellValue=0;
-				grid[i][j].leftSubcellValue=0;
-				grid[i][j].rightSubcellValue=0;
-			}
+		synchronized(grid){
+			grid.clear();
+			frontier.rebuild();
+			scheduler=null;
+			activity=null;
+			snapshots.publish(grid);
 		}
 		annotationLabels.clear();
 		annotationCoordinates.clear();
@@ -450,167 +911,59 @@ public class CellSpace extends JPanel implements MouseListener, Runnable, KeyLis
 	 * all annotations to the file name.con */
 	public void save(String name){
 		try {
-
-			/* Create the file if it does not exist */
-			File file = new File(name);
-			if (!file.exists()){
-				file.createNewFile();
-			}
-
-			/* Delete the file it is exists and re-create
-			 * as empty */
-			else{
-				file.delete();
-				file.createNewFile();
-			}
-
-			/* Create java file writer objects */
-			FileWriter fileWriter = new FileWriter(file);
-			BufferedWriter writer=new BufferedWriter(fileWriter);
-
-			/* Record in the file the number of annotations
-			 * in the file (makes reading the file back easier) */
-			int noOfLabels = annotationLabels.size();
-			writer.write(Integer.toString(noOfLabels));
-			writer.newLine();
-
-			/* Variables for storing the current annotation to write
-			 * as well as the coordinates */
-			String label;
-			int x;
-			int y;
-
-			/* For every annotation, write the actual string,
-			 * then on the next line the x coordinate, then on
-			 * the next line the y coordinate */
-			for(int i=0;i<noOfLabels;i++){
-				label=annotationLabels.get(i);
-				x=annotationCoordinates.get(i*2);
-				y=annotationCoordinates.get(i*2+1);
-				writer.write(label);
-				writer.newLine();
-				writer.write(Integer.toString(x));
-				writer.newLine();
-				writer.write(Integer.toString(y));
-				writer.newLine();
-			}
-
-			/* For every cell in the cell space, write the states of the
-			 * four subcells in integer format, one on each line */
-			for(int i=0; i<grid.length;i++){
-				for(int j=0;j<grid[i].length;j++){
-					writer.write(Integer.toString(grid[i][j].topSubcellValue));
-					writer.newLine();
-					writer.write(Integer.toString(grid[i][j].bottomSubcellValue));
-					writer.newLine();
-					writer.write(Integer.toString(grid[i][j].leftSubcellValue));
-					writer.newLine();
-					writer.write(Integer.toString(grid[i][j].rightSubcellValue));
-
-					/* if the cell is not the bottom-right most cell then
-					 * add a new line the four subcells */
-					if(i!=grid.length-1 || j!=grid[i].length-1){
-						writer.newLine();
-					}
-				}
-
-				/* If the current row is not the bottom row, add
-				 * a newRow identifier to the file at the end of a row */
-				if(i!=grid.length-1){
-					writer.write("newRow");
-					writer.newLine();
-				}
-			}
-
-			/* Close the java file writer objects */
-			writer.close();
-			fileWriter.close();
+			ConfigurationFile.save(name,grid,annotationLabels,annotationCoordinates);
 		} catch (IOException e1) {
 		}
 	}
 
-	/* Loads the configuration file name.con into the cell space,
-	 * together with any annotations at the appropriate locations */
+	/* Loads the configuration file name.con into the cell space (which takes
+	 * the size of the loaded configuration), together with any annotations at the
+	 * appropriate locations */
 	public void load(String name){
-
-		/* Record the current row and column number */
-		int row=0;
-		int column=0;
 		try {
 
 			/* Open the file, checking one last time that it definitely
 			 * exists */
-			File file = new File(name);
-			if (file.exists()){
-
-				/* Create java reader objects */
-				FileReader fileReader = new FileReader(file);
-				BufferedReader reader=new BufferedReader(fileReader);
+			if (new File(name).exists()){
 
-				/* Clear the loaded set of annotations and coordinates */
+				/* Clear the loaded set of annotations and coordinates, then read
+				 * the file and use its cells as the cell space */
 				annotationLabels.clear();
 				annotationCoordinates.clear();
-
-				/* Read from the first line of the file, the number of annotations
-				 * which are stored and to be loaded */
-				int noOfLabels = Integer.parseInt(reader.readLine());
-
-				/* Variables for storing the latest annotation read and the
-				 * coordinates */
-				String label;
-				int x;
-				int y;
-
-				/* For each annotation stored, read the annotation itself
-				 * and then the x,y coordinates, then add it to the program
-				 * memory */
-				for(int i=0;i<noOfLabels;i++){
-					label=reader.readLine();
-					x=Integer.parseInt(reader.readLine());
-					y=Integer.parseInt(reader.readLine());
-					annotationLabels.add(label);
-					annotationCoordinates.add(new Integer(x));
-					annotationCoordinates.add(new Integer(y));
-				}
-
-				/* While there is data to be read left in the file */
-				while(reader.ready()){
-
-					/* Read the current line */
-					String temp=reader.readLine();
-
-					/* If its a newRow indicator, increment the current row, then
-					 * take the next four subcells read for the first cell in the
-					 * new row */
-					if(temp.equals("newRow")){
-						row++;
-						grid[row][0].topSubcellValue=Integer.parseInt(reader.readLine());
-						grid[row][0].bottomSubcellValue=Integer.parseInt(reader.readLine());
-						grid[row][0].leftSubcellValue=Integer.parseInt(reader.readLine());
-						grid[row][0].rightSubcellValue=Integer.parseInt(reader.readLine());
-						column=1;
-					}
-
-					/* Else just read the four subcells and put them
-					 * in the current column number, increasing the current
-					 * colunm afterwards */
-					else{
-						grid[row][column].topSubcellValue=Integer.parseInt(temp);
-						grid[row][column].bottomSubcellValue=Integer.parseInt(reader.readLine());
-						grid[row][column].leftSubcellValue=Integer.parseInt(reader.readLine());
-						grid[row][column].rightSubcellValue=Integer.parseInt(reader.readLine());
-						column++;
-					}
+				setGrid(ConfigurationFile.load(name,annotationLabels,annotationCoordinates));
+
+				/* Use the cells' rates from the matching rate file, if there is one (saying so
+				 * if it cannot be read, in which case every cell keeps rate 1) */
+				try {
+					rates=RateMap.load(name,grid.width,grid.height);
+				} catch (Exception e) {
+					JOptionPane.showMessageDialog(this,"The rate file could not be read, so every cell has rate 1:\n"
+							+e.getMessage(),"Rate file",JOptionPane.WARNING_MESSAGE);
 				}
-
-				/* Close the java reader objects */
-				reader.close();
-				fileReader.close();
 			}
 		} catch (Exception e) {
 		}
 	}
 
+	/* Replaces the cell space with a new blank one of the given size */
+	public void newGrid(int width, int height){
+		setGrid(new CellGrid(width,height));
+	}
+
+	/* Uses the given grid as the cell space and resizes the panel to fit it */
+	void setGrid(CellGrid newGrid){
+		frontier=new Frontier(newGrid);
+		rates=new RateMap(newGrid.width,newGrid.height);
+		scheduler=null;
+		grid=newGrid;
+		synchronized(newGrid){
+			snapshots.publish(newGrid);
+		}
+		activity=null;
+		lastUpdatedCellXPosition=-1;
+		updateSize();
+	}
+
 	/* Ends the "currently typing" state when in add annotation mode
 	 * and stores the typed annotation for permanent display */
 	void endTyping(){
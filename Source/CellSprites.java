@@ -0,0 +1,83 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/* Pre-drawn images (sprites) of a cell in each of its 16 states - its four subcells in the colours of
+ * their states, the outline of the cell and the X dividing the subcells - so that drawing a cell
+ * space is just copying one image per cell. The sprites are drawn once for a cell size and pair of
+ * state colours, and drawn again only if those change. Each sprite is one pixel wider and higher
+ * than the cell size, to include the outline on the right and bottom (shared with the next cell) */
+public class CellSprites {
+
+	/* Cell size and colours the sprites were drawn with */
+	final int cellsize;
+	final Color state0;
+	final Color state1;
+
+	/* Sprite of each state (TOP, BOTTOM, LEFT and RIGHT bits of CellGrid) */
+	final BufferedImage[] sprites=new BufferedImage[16];
+
+	/* Sprites for the current cell size and colours, drawn when first needed */
+	private static CellSprites current;
+
+	/* Constructor - draws the sprites for the given cell size and colours */
+	public CellSprites(int cellsize, Color state0, Color state1){
+		this.cellsize=cellsize;
+		this.state0=state0;
+		this.state1=state1;
+		for(int state=0;state<16;state++){
+			sprites[state]=new BufferedImage(cellsize+1,cellsize+1,BufferedImage.TYPE_INT_RGB);
+			Graphics2D g=sprites[state].createGraphics();
+			drawCell(g,state,0,0,cellsize,state0,state1);
+			g.dispose();
+		}
+	}
+
+	/* Returns the sprites for the cell size and colours in GlobalAttributes */
+	static synchronized CellSprites forCurrentSize(){
+		if(current==null || !current.matches(GlobalAttributes.cellsize)){
+			current=new CellSprites(GlobalAttributes.cellsize,GlobalAttributes.state0,GlobalAttributes.state1);
+		}
+		return current;
+	}
+
+	/* Whether the sprites are of the given cell size, in the colours in GlobalAttributes */
+	boolean matches(int cellsize){
+		return this.cellsize==cellsize && state0.equals(GlobalAttributes.state0) && state1.equals(GlobalAttributes.state1);
+	}
+
+	/* Draws a cell in the given state with its top left corner at x,y */
+	void draw(Graphics g, int state, int x, int y){
+		g.drawImage(sprites[state],x,y,null);
+	}
+
+	/* Draws a cell in the given state with its top left corner at left,top, with polygons */
+	static void drawCell(Graphics g, int state, int left, int top, int cellsize, Color state0, Color state1){
+		int right=left+cellsize;
+		int bottom=top+cellsize;
+		int middleX=left+cellsize/2;
+		int middleY=top+cellsize/2;
+
+		/* Paint the top, bottom, left and right triangle subcells */
+		fillTriangle(g,(state&CellGrid.TOP)!=0 ? state1 : state0,left,top,middleX,middleY,right,top);
+		fillTriangle(g,(state&CellGrid.BOTTOM)!=0 ? state1 : state0,left,bottom,middleX,middleY,right,bottom);
+		fillTriangle(g,(state&CellGrid.LEFT)!=0 ? state1 : state0,left,top,middleX,middleY,left,bottom);
+		fillTriangle(g,(state&CellGrid.RIGHT)!=0 ? state1 : state0,right,top,middleX,middleY,right,bottom);
+
+		/* Set the colour to black and draw the black outline of the square main cell,
+		 * and the lines of the X in the cell which divides the four subcells */
+		g.setColor(Color.BLACK);
+		g.drawRect(left,top,cellsize,cellsize);
+		g.drawLine(left,top,middleX,middleY);
+		g.drawLine(right,top,middleX,middleY);
+		g.drawLine(left,bottom,middleX,middleY);
+		g.drawLine(right,bottom,middleX,middleY);
+	}
+
+	/* Paints the triangle with the given corners in the given colour */
+	private static void fillTriangle(Graphics g, Color colour, int x1, int y1, int x2, int y2, int x3, int y3){
+		g.setColor(colour);
+		g.fillPolygon(new int[]{x1,x2,x3},new int[]{y1,y2,y3},3);
+	}
+}
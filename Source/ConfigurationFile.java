@@ -0,0 +1,686 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+/* Reads and writes configuration (.con) files, which come in two formats.
+ *
+ * Files are written in the binary format (version 2), all numbers being little-endian ints:
+ * the bytes "STCA", the version, the width and height of the cell space, the STCA it was saved
+ * with, the encoding of the cells (PACKED or TILED), the number of annotations, then each
+ * annotation's x,y coordinates, length in bytes and UTF-8 text. The cells follow in one of two
+ * encodings.
+ *
+ * PACKED holds each cell as its 4-bit state (see CellGrid) with two cells to a byte, the first
+ * in the low four bits, row by row with each row padded to a multiple of 64 cells - so every 32
+ * bytes hold one word of each of the grid's bitplanes, and are read from the file mapped into
+ * memory straight into them.
+ *
+ * PACKED is only written when asked for (see Batch -packed), as it takes half a byte per cell
+ * however many are quiescent, but is the quickest to read and write.
+ *
+ * TILED (the encoding written by default) splits the cell space into tiles of 64 by TILE_HEIGHT cells (one
+ * word of each bitplane across, fewer cells at the right and bottom edges), row of tiles by row
+ * of tiles, and numbers the cells of a tile row by row, 64 to a row. Each tile is a byte giving
+ * its encoding followed by either:
+ *   RUNS    runs of cells in the same state, covering the whole tile, each as a number holding
+ *           the length of the run less one times 16 plus the state, or
+ *   SPARSE  the number of cells not in state 0, then for each of them a number holding the
+ *           count of cells in state 0 skipped since the last one times 16 plus its state,
+ * whichever is shorter, every number being written as a varint (seven bits to a byte, lowest
+ * first, the top bit set on every byte but the last). As most cells of most configurations are
+ * quiescent, nearly every tile takes two bytes. Tiles are read a buffer at a time from the file,
+ * and each run or cell goes straight into the grid's bitplanes.
+ *
+ * Files written by earlier versions are text files which hold, one value per line: the
+ * dimensions of the cell space (a line "size <width> <height>"), the number of annotations,
+ * then each annotation's text and x,y coordinates, then the states of the four subcells of every
+ * cell (top, bottom, left, right), column by column with a "newRow" line between columns.
+ * Files written before the dimensions were recorded have no size line, and are read as having
+ * the default dimensions given in GlobalAttributes. These are still read, and can be written by
+ * saveText (see Batch -text) */
+public class ConfigurationFile {
+
+	/* Prefix of the line recording the dimensions of the cell space */
+	static final String SIZE="size";
+
+	/* First bytes of a binary file ("STCA" as a little-endian int), and its version */
+	static final int MAGIC=0x41435453;
+	static final int VERSION=2;
+
+	/* Encodings of the cells of a binary file */
+	static final int PACKED=0;
+	static final int TILED=1;
+
+	/* Height of the tiles of the TILED encoding, and the encodings of a tile */
+	static final int TILE_HEIGHT=64;
+	static final int RUNS=0;
+	static final int SPARSE=1;
+
+	/* Bytes of the header before the annotations */
+	static final int HEADER=28;
+
+	/* Most bytes mapped into memory at once */
+	static final int MAX_MAP=1<<30;
+
+	/* Loads the configuration file name (in either format) into a new grid of the size recorded
+	 * in the file, and returns it. The annotations and their coordinates are added to the given
+	 * lists, unless they are null (in which case they are skipped) */
+	static CellGrid load(String name, Vector<String> labels, Vector<Integer> coordinates) throws IOException{
+		if(isBinary(name)){
+			return loadBinary(name,labels,coordinates);
+		}
+		return loadText(name,labels,coordinates);
+	}
+
+	/* Returns the STCA which the configuration file name was saved with, or -1 if the file does
+	 * not record it (as text files do not) */
+	static int automaton(String name) throws IOException{
+		if(!isBinary(name)){
+			return -1;
+		}
+		FileChannel channel=new RandomAccessFile(name,"r").getChannel();
+		try{
+			return read(channel,HEADER,name).getInt(16);
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/* Whether the file name is in the binary format */
+	static boolean isBinary(String name) throws IOException{
+		FileInputStream input=new FileInputStream(name);
+		try{
+			byte[] magic=new byte[4];
+			return input.read(magic)==4 && ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt()==MAGIC;
+		}
+		finally{
+			input.close();
+		}
+	}
+
+	/* Loads a binary configuration file (mapping the cells of a PACKED one into memory) */
+	private static CellGrid loadBinary(String name, Vector<String> labels, Vector<Integer> coordinates) throws IOException{
+		FileChannel channel=new RandomAccessFile(name,"r").getChannel();
+		try{
+
+			/* Read the header and the annotations */
+			long size=channel.size();
+			ByteBuffer buffer=read(channel,HEADER,name);
+			buffer.getInt();
+			int version=buffer.getInt();
+			int width=buffer.getInt();
+			int height=buffer.getInt();
+			buffer.getInt();
+			int encoding=buffer.getInt();
+			int noOfLabels=buffer.getInt();
+			if(version!=VERSION || (encoding!=PACKED && encoding!=TILED)){
+				throw new IOException(name+" is of an unknown version or encoding");
+			}
+			if(width<1 || height<1){
+				throw new IOException(name+" has a size of "+width+" x "+height);
+			}
+			for(int i=0;i<noOfLabels;i++){
+				ByteBuffer label=read(channel,12,name);
+				int x=label.getInt();
+				int y=label.getInt();
+				int length=label.getInt();
+				if(length<0 || length>size){
+					throw new IOException(name+" has an annotation of "+length+" bytes");
+				}
+				byte[] text=new byte[length];
+				read(channel,length,name).get(text);
+				if(labels!=null){
+					labels.add(new String(text,StandardCharsets.UTF_8));
+					coordinates.add(Integer.valueOf(x));
+					coordinates.add(Integer.valueOf(y));
+				}
+			}
+
+			/* Read the cells of the tiles from the rest of the file */
+			CellGrid grid=new CellGrid(width,height);
+			long position=channel.position();
+			if(encoding==TILED){
+				InputStream input=new FileInputStream(name);
+				try{
+					while(position>0){
+						position-=input.skip(position);
+					}
+					readTiles(new VarintReader(input),grid);
+				}
+				finally{
+					input.close();
+				}
+			}
+
+			/* Or read the cells, 32 bytes to a word of each bitplane, mapping as much of the file
+			 * as possible at a time */
+			else{
+				int words=grid.wordsPerRow*height;
+				if(size<position+(long)words*32){
+					throw new IOException(name+" is too short for its size");
+				}
+				for(int word=0;word<words;){
+					int count=Math.min(words-word,MAX_MAP/32);
+					ByteBuffer cells=channel.map(FileChannel.MapMode.READ_ONLY,position,(long)count*32).order(ByteOrder.LITTLE_ENDIAN);
+					for(int k=0;k<count;k++){
+						unpackWord(grid,word+k,cells.getLong(k*32),cells.getLong(k*32+8),cells.getLong(k*32+16),cells.getLong(k*32+24));
+					}
+					word+=count;
+					position+=(long)count*32;
+				}
+			}
+
+			/* Clear any cells in the padding of each row */
+			int spare=grid.wordsPerRow*64-width;
+			if(spare>0){
+				long mask=-1L>>>spare;
+				for(int y=0;y<height;y++){
+					int last=grid.word(width-1,y);
+					grid.top[last]&=mask;
+					grid.bottom[last]&=mask;
+					grid.left[last]&=mask;
+					grid.right[last]&=mask;
+				}
+			}
+			grid.rehash();
+			return grid;
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/* Reads the given number of bytes from the channel's position into a new buffer, ready to be
+	 * read (little-endian), failing if the file name ends first */
+	private static ByteBuffer read(FileChannel channel, int length, String name) throws IOException{
+		ByteBuffer buffer=ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer)<0){
+				throw new IOException(name+" ends in its header");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/* Reads the tiles of the TILED encoding into the (empty) grid */
+	private static void readTiles(VarintReader reader, CellGrid grid) throws IOException{
+		for(int tileY=0;tileY<grid.height;tileY+=TILE_HEIGHT){
+			int cells=64*Math.min(TILE_HEIGHT,grid.height-tileY);
+			for(int w=0;w<grid.wordsPerRow;w++){
+				int first=tileY*grid.wordsPerRow+w;
+				int kind=reader.readByte();
+				if(kind==RUNS){
+					for(int position=0;position<cells;){
+						int run=reader.readVarint();
+						int length=(run>>>4)+1;
+						if(length>cells-position){
+							throw new IOException("run passes the end of a tile");
+						}
+						fill(grid,first,position,length,run&15);
+						position+=length;
+					}
+				}
+				else if(kind==SPARSE){
+					int count=reader.readVarint();
+					int position=-1;
+					for(int i=0;i<count;i++){
+						int cell=reader.readVarint();
+						position+=(cell>>>4)+1;
+						if(position>=cells || position<0){
+							throw new IOException("cell outside its tile");
+						}
+						fill(grid,first,position,1,cell&15);
+					}
+				}
+				else{
+					throw new IOException("unknown tile encoding "+kind);
+				}
+			}
+		}
+	}
+
+	/* Puts length cells of a tile (whose first word in each bitplane is first), from the given
+	 * cell of the tile onwards, in the given state - a row of 64 at a time */
+	private static void fill(CellGrid grid, int first, int position, int length, int state){
+		if(state==0){
+			return;
+		}
+		while(length>0){
+			int column=position&63;
+			int count=Math.min(length,64-column);
+			long mask=(count==64 ? -1L : (1L<<count)-1)<<column;
+			int word=first+(position>>>6)*grid.wordsPerRow;
+			if((state&CellGrid.TOP)!=0){
+				grid.top[word]|=mask;
+			}
+			if((state&CellGrid.BOTTOM)!=0){
+				grid.bottom[word]|=mask;
+			}
+			if((state&CellGrid.LEFT)!=0){
+				grid.left[word]|=mask;
+			}
+			if((state&CellGrid.RIGHT)!=0){
+				grid.right[word]|=mask;
+			}
+			position+=count;
+			length-=count;
+		}
+	}
+
+	/* Reads the bytes and varints of a file a buffer at a time */
+	private static class VarintReader {
+		final InputStream input;
+		final byte[] buffer=new byte[1<<16];
+		int position=0;
+		int limit=0;
+
+		VarintReader(InputStream input){
+			this.input=input;
+		}
+
+		/* Returns the next byte */
+		int readByte() throws IOException{
+			if(position==limit){
+				limit=input.read(buffer);
+				position=0;
+				if(limit<=0){
+					limit=0;
+					throw new IOException("file ends before its last tile");
+				}
+			}
+			return buffer[position++]&0xff;
+		}
+
+		/* Returns the next varint */
+		int readVarint() throws IOException{
+			int value=0;
+			for(int shift=0;shift<32;shift+=7){
+				int b=readByte();
+				value|=(b&0x7f)<<shift;
+				if(b<0x80){
+					return value;
+				}
+			}
+			throw new IOException("varint too long");
+		}
+	}
+
+	/* Sets one word of each bitplane of the grid from the states of its 64 cells, sixteen to
+	 * each of the given longs */
+	private static void unpackWord(CellGrid grid, int word, long cells0, long cells1, long cells2, long cells3){
+		grid.top[word]=gather(cells0,cells1,cells2,cells3,3);
+		grid.bottom[word]=gather(cells0,cells1,cells2,cells3,2);
+		grid.left[word]=gather(cells0,cells1,cells2,cells3,1);
+		grid.right[word]=gather(cells0,cells1,cells2,cells3,0);
+	}
+
+	/* Returns the given bit of each of 64 4-bit states (sixteen to each of the given longs) */
+	private static long gather(long cells0, long cells1, long cells2, long cells3, int bit){
+		return compress(cells0>>>bit) | compress(cells1>>>bit)<<16 | compress(cells2>>>bit)<<32 | compress(cells3>>>bit)<<48;
+	}
+
+	/* Returns the lowest bit of each of the sixteen 4-bit fields of the given long, as sixteen
+	 * consecutive bits */
+	private static long compress(long bits){
+		bits&=0x1111111111111111L;
+		bits=(bits|bits>>>3)&0x0303030303030303L;
+		bits=(bits|bits>>>6)&0x000F000F000F000FL;
+		bits=(bits|bits>>>12)&0x000000FF000000FFL;
+		return (bits|bits>>>24)&0xFFFFL;
+	}
+
+	/* Returns sixteen consecutive bits of the given long spread out to the lowest bit of each of
+	 * sixteen 4-bit fields (the reverse of compress) */
+	private static long spread(long bits){
+		bits&=0xFFFFL;
+		bits=(bits|bits<<24)&0x000000FF000000FFL;
+		bits=(bits|bits<<12)&0x000F000F000F000FL;
+		bits=(bits|bits<<6)&0x0303030303030303L;
+		return (bits|bits<<3)&0x1111111111111111L;
+	}
+
+	/* Loads a text configuration file */
+	private static CellGrid loadText(String name, Vector<String> labels, Vector<Integer> coordinates) throws IOException{
+
+		/* Create java reader objects */
+		BufferedReader reader=new BufferedReader(new FileReader(new File(name)));
+		try{
+
+			/* Read the dimensions of the cell space if they are recorded, then the
+			 * number of annotations which are stored */
+			String line=reader.readLine();
+			int width=GlobalAttributes.xCells;
+			int height=GlobalAttributes.yCells;
+			if(line.startsWith(SIZE)){
+				String[] size=line.split(" ");
+				width=Integer.parseInt(size[1]);
+				height=Integer.parseInt(size[2]);
+				line=reader.readLine();
+			}
+			int noOfLabels = Integer.parseInt(line);
+			CellGrid grid=new CellGrid(width,height);
+
+			/* For each annotation stored, read the annotation itself
+			 * and then the x,y coordinates */
+			for(int i=0;i<noOfLabels;i++){
+				String label=reader.readLine();
+				int x=Integer.parseInt(reader.readLine());
+				int y=Integer.parseInt(reader.readLine());
+				if(labels!=null){
+					labels.add(label);
+					coordinates.add(Integer.valueOf(x));
+					coordinates.add(Integer.valueOf(y));
+				}
+			}
+
+			/* Record the current row and column number */
+			int row=0;
+			int column=0;
+
+			/* While there is data to be read left in the file */
+			while((line=reader.readLine())!=null){
+
+				/* If its a newRow indicator, increment the current row and start
+				 * again from the first cell in the new row */
+				if(line.equals("newRow")){
+					row++;
+					column=0;
+					line=reader.readLine();
+				}
+
+				/* Read the four subcells and put them in the current column
+				 * number, increasing the current column afterwards */
+				grid.setTop(row,column,Integer.parseInt(line));
+				grid.setBottom(row,column,Integer.parseInt(reader.readLine()));
+				grid.setLeft(row,column,Integer.parseInt(reader.readLine()));
+				grid.setRight(row,column,Integer.parseInt(reader.readLine()));
+				column++;
+			}
+			return grid;
+		}
+		finally{
+			reader.close();
+		}
+	}
+
+	/* Saves the given grid, as well as all annotations and their coordinates and the current STCA,
+	 * to the file name in the binary format (with the TILED encoding) */
+	static void save(String name, CellGrid grid, Vector<String> labels, Vector<Integer> coordinates) throws IOException{
+		save(name,grid,labels,coordinates,TILED);
+	}
+
+	/* Saves the given grid, as well as all annotations and their coordinates and the current STCA,
+	 * to the file name in the binary format with the given encoding of the cells */
+	static void save(String name, CellGrid grid, Vector<String> labels, Vector<Integer> coordinates, int encoding) throws IOException{
+
+		/* Create the file (replacing it if it exists) */
+		RandomAccessFile file=new RandomAccessFile(name,"rw");
+		FileChannel channel=file.getChannel();
+		try{
+			file.setLength(0);
+
+			/* Write the header and the annotations */
+			int noOfLabels=labels.size();
+			byte[][] texts=new byte[noOfLabels][];
+			int length=HEADER;
+			for(int i=0;i<noOfLabels;i++){
+				texts[i]=labels.get(i).getBytes(StandardCharsets.UTF_8);
+				length+=12+texts[i].length;
+			}
+			ByteBuffer header=ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(grid.width);
+			header.putInt(grid.height);
+			header.putInt(GlobalAttributes.automata);
+			header.putInt(encoding);
+			header.putInt(noOfLabels);
+			for(int i=0;i<noOfLabels;i++){
+				header.putInt(coordinates.get(i*2));
+				header.putInt(coordinates.get(i*2+1));
+				header.putInt(texts[i].length);
+				header.put(texts[i]);
+			}
+			header.flip();
+			while(header.hasRemaining()){
+				channel.write(header);
+			}
+
+			if(encoding==TILED){
+				writeTiles(channel,grid);
+				return;
+			}
+
+			/* Or write the cells, 32 bytes for each word of the bitplanes, a buffer at a time */
+			ByteBuffer cells=ByteBuffer.allocateDirect(1<<16).order(ByteOrder.LITTLE_ENDIAN);
+			for(int word=0;word<grid.top.length;word++){
+				for(int quarter=0;quarter<64;quarter+=16){
+					cells.putLong(spread(grid.top[word]>>>quarter)<<3 | spread(grid.bottom[word]>>>quarter)<<2
+							| spread(grid.left[word]>>>quarter)<<1 | spread(grid.right[word]>>>quarter));
+				}
+				if(!cells.hasRemaining()){
+					cells.flip();
+					while(cells.hasRemaining()){
+						channel.write(cells);
+					}
+					cells.clear();
+				}
+			}
+			cells.flip();
+			while(cells.hasRemaining()){
+				channel.write(cells);
+			}
+		}
+		finally{
+			channel.close();
+			file.close();
+		}
+	}
+
+	/* Writes the tiles of the TILED encoding of the grid, a buffer at a time */
+	private static void writeTiles(FileChannel channel, CellGrid grid) throws IOException{
+		ByteBuffer buffer=ByteBuffer.allocate(1<<16);
+		byte[] sparse=new byte[MAX_TILE_BYTES];
+		byte[] runs=new byte[MAX_TILE_BYTES];
+		for(int tileY=0;tileY<grid.height;tileY+=TILE_HEIGHT){
+			int cells=64*Math.min(TILE_HEIGHT,grid.height-tileY);
+			for(int w=0;w<grid.wordsPerRow;w++){
+				int first=tileY*grid.wordsPerRow+w;
+
+				/* Use whichever encoding of the tile is shorter (an empty tile takes two
+				 * bytes as SPARSE, which RUNS cannot beat) */
+				byte[] tile=sparse;
+				int length=encodeSparse(grid,first,cells,sparse);
+				if(length>2){
+					int runsLength=encodeRuns(grid,first,cells,runs);
+					if(runsLength<length){
+						tile=runs;
+						length=runsLength;
+					}
+				}
+				if(buffer.remaining()<length){
+					buffer.flip();
+					while(buffer.hasRemaining()){
+						channel.write(buffer);
+					}
+					buffer.clear();
+				}
+				buffer.put(tile,0,length);
+			}
+		}
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+	/* Most bytes taken by a tile in either encoding (a run or cell of three-byte varints for
+	 * every cell, and the tile's encoding and count) */
+	static final int MAX_TILE_BYTES=3*64*TILE_HEIGHT+4;
+
+	/* Writes the SPARSE encoding of the given number of cells of a tile (whose first word in
+	 * each bitplane is first) into dest, and returns its length */
+	private static int encodeSparse(CellGrid grid, int first, int cells, byte[] dest){
+		int count=0;
+		for(int row=0;row<cells>>>6;row++){
+			count+=Long.bitCount(occupied(grid,first+row*grid.wordsPerRow));
+		}
+		dest[0]=SPARSE;
+		int length=putVarint(dest,1,count);
+		int last=-1;
+		for(int row=0;row<cells>>>6 && count>0;row++){
+			int word=first+row*grid.wordsPerRow;
+			long bits=occupied(grid,word);
+			while(bits!=0){
+				int column=Long.numberOfTrailingZeros(bits);
+				int position=(row<<6)+column;
+				length=putVarint(dest,length,(position-last-1)<<4 | state(grid,word,column));
+				last=position;
+				bits&=bits-1;
+			}
+		}
+		return length;
+	}
+
+	/* Writes the RUNS encoding of the given number of cells of a tile (whose first word in each
+	 * bitplane is first) into dest, and returns its length */
+	private static int encodeRuns(CellGrid grid, int first, int cells, byte[] dest){
+		dest[0]=RUNS;
+		int length=1;
+		int position=0;
+		int state=state(grid,first,0);
+		while(position<cells){
+
+			/* A run of state 0 ends at the next occupied cell, found a word at a time, and
+			 * any other run is followed a cell at a time */
+			int end=position+1;
+			int next=0;
+			if(state==0){
+				end=nextOccupied(grid,first,end,cells);
+				if(end<cells){
+					next=state(grid,first+(end>>>6)*grid.wordsPerRow,end&63);
+				}
+			}
+			while(state!=0 && end<cells){
+				next=state(grid,first+(end>>>6)*grid.wordsPerRow,end&63);
+				if(next!=state){
+					break;
+				}
+				end++;
+			}
+			length=putVarint(dest,length,(end-position-1)<<4 | state);
+			position=end;
+			state=next;
+		}
+		return length;
+	}
+
+	/* Returns the first cell of a tile (whose first word in each bitplane is first) from the
+	 * given cell onwards which is not in state 0, or the number of cells if there is none */
+	private static int nextOccupied(CellGrid grid, int first, int position, int cells){
+		while(position<cells){
+			long bits=occupied(grid,first+(position>>>6)*grid.wordsPerRow)>>>(position&63);
+			if(bits!=0){
+				return Math.min(cells,position+Long.numberOfTrailingZeros(bits));
+			}
+			position=(position|63)+1;
+		}
+		return cells;
+	}
+
+	/* Returns the cells of a word which are not in state 0 */
+	private static long occupied(CellGrid grid, int word){
+		return grid.top[word] | grid.bottom[word] | grid.left[word] | grid.right[word];
+	}
+
+	/* Returns the 4-bit state of the cell in the given column of a word */
+	private static int state(CellGrid grid, int word, int column){
+		return (int)(grid.top[word]>>>column&1)<<3 | (int)(grid.bottom[word]>>>column&1)<<2
+				| (int)(grid.left[word]>>>column&1)<<1 | (int)(grid.right[word]>>>column&1);
+	}
+
+	/* Writes value as a varint into dest at the given position, and returns the position after it */
+	private static int putVarint(byte[] dest, int position, int value){
+		while((value&~0x7f)!=0){
+			dest[position++]=(byte)((value&0x7f)|0x80);
+			value>>>=7;
+		}
+		dest[position++]=(byte)value;
+		return position;
+	}
+
+	/* Saves the given grid, as well as all annotations and their coordinates, to the file name in
+	 * the text format (which earlier versions of the program read) */
+	static void saveText(String name, CellGrid grid, Vector<String> labels, Vector<Integer> coordinates) throws IOException{
+
+		/* Create java file writer objects (replacing the file if it exists) */
+		BufferedWriter writer=new BufferedWriter(new FileWriter(new File(name)));
+		try{
+
+			/* Record the dimensions of the cell space */
+			writer.write(SIZE+" "+grid.width+" "+grid.height);
+			writer.newLine();
+
+			/* Record in the file the number of annotations
+			 * in the file (makes reading the file back easier) */
+			int noOfLabels = labels.size();
+			writer.write(Integer.toString(noOfLabels));
+			writer.newLine();
+
+			/* For every annotation, write the actual string,
+			 * then on the next line the x coordinate, then on
+			 * the next line the y coordinate */
+			for(int i=0;i<noOfLabels;i++){
+				writer.write(labels.get(i));
+				writer.newLine();
+				writer.write(Integer.toString(coordinates.get(i*2)));
+				writer.newLine();
+				writer.write(Integer.toString(coordinates.get(i*2+1)));
+				writer.newLine();
+			}
+
+			/* For every cell in the cell space, write the states of the
+			 * four subcells in integer format, one on each line */
+			for(int i=0; i<grid.width;i++){
+				for(int j=0;j<grid.height;j++){
+					writer.write(Integer.toString(grid.getTop(i,j)));
+					writer.newLine();
+					writer.write(Integer.toString(grid.getBottom(i,j)));
+					writer.newLine();
+					writer.write(Integer.toString(grid.getLeft(i,j)));
+					writer.newLine();
+					writer.write(Integer.toString(grid.getRight(i,j)));
+
+					/* if the cell is not the bottom-right most cell then
+					 * add a new line the four subcells */
+					if(i!=grid.width-1 || j!=grid.height-1){
+						writer.newLine();
+					}
+				}
+
+				/* If the current row is not the bottom row, add
+				 * a newRow identifier to the file at the end of a row */
+				if(i!=grid.width-1){
+					writer.write("newRow");
+					writer.newLine();
+				}
+			}
+		}
+		finally{
+			writer.close();
+		}
+	}
+}
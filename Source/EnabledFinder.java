@@ -0,0 +1,7 @@
+/* Something which finds the enabled cells of a grid - see BitslicedMatcher.findEnabled */
+public interface EnabledFinder {
+
+	/* Writes into enabled (indexed as the grid's bitplanes) a bit for every cell which is enabled
+	 * for the given STCA */
+	void findEnabled(CellGrid grid, int automata, long[] enabled);
+}
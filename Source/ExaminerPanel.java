@@ -9,6 +9,10 @@ import javax.swing.JPanel;
 @SuppressWarnings("serial")
 public class ExaminerPanel extends JPanel {
 
+	/* Corners of the neighbouring subcell being drawn */
+	private int[] xCorners = new int[3];
+	private int[] yCorners = new int[3];
+
 	/* Overrides default JPanel paint method */
 	public void paint(Graphics g){
 
@@ -23,6 +27,7 @@ public class ExaminerPanel extends JPanel {
 
 		/* Stored locally for convenience */
 		int cellsize = GlobalAttributes.cellsize;
+		CellSprites sprites = CellSprites.forCurrentSize();
 
 		/* These coordinates increment throughout the method, and indiciate where to start
 		 * drawing the current cell */
@@ -41,265 +46,72 @@ public class ExaminerPanel extends JPanel {
 			}
 
 			/* Transition rule source cell (and neighbouring subcells) */
-
-			/* Top subcell vertices coordinates */
-			int[] xPoints = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] yPoints={(y+cellsize),(y+cellsize+cellsize/2),(y+cellsize)};
-
-			/* Bottom subcell vertices coordinates */
-			int[] xPoints2 = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] yPoints2={(y+2*cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Left subcell vertices coordinates */
-			int[] xPoints3 = {(x+cellsize),(x+cellsize+cellsize/2),(x+cellsize)};
-			int[] yPoints3={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Right subcell vertices coordinates */
-			int[] xPoints4 = {(x+2*cellsize),(x+cellsize+cellsize/2),(x+2*cellsize)};
-			int[] yPoints4={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Top neighbouring subcell vertices coordinates */
-			int[] xPoints5 = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] yPoints5={(y+cellsize),(y+cellsize-cellsize/2),(y+cellsize)};
-
-			/* Bottom neighbouring subcell vertices coordinates */
-			int[] xPoints6 = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] yPoints6={(y+2*cellsize),(y+2*cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Left neighbouring subcell vertices coordinates */
-			int[] xPoints7 = {(x+cellsize),(x+cellsize-cellsize/2),(x+cellsize)};
-			int[] yPoints7={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Right neighbouring subcell vertices coordinates */
-			int[] xPoints8 = {(x+2*cellsize),(x+2*cellsize+cellsize/2),(x+2*cellsize)};
-			int[] yPoints8={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Set the appropriate colour for the top subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+2]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints,yPoints,3);
-			
-			/* Set the appropriate colour for the bottom subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+3]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints2,yPoints2,3);
-			
-			/* Set the appropriate colour for the left subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+4]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints3,yPoints3,3);
-			
-			/* Set the appropriate colour for the right subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+5]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints4,yPoints4,3);
-			
-			/* Set the appropriate colour for the top neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+6]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints5,yPoints5,3);		
-			
-			/* Set the appropriate colour for the bottom neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+7]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints6,yPoints6,3);
-			
-			/* Set the appropriate colour for the left neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+8]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints7,yPoints7,3);	
-			
-			/* Set the appropriate colour for the right neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+9]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(xPoints8,yPoints8,3);
-
-			/* Draw black outlines around all the source of the rule's subcells */
-			g.setColor(Color.BLACK);
-			g.drawRect(x+cellsize, y+cellsize, cellsize, cellsize);
-			g.drawPolygon(xPoints,yPoints,3);
-			g.drawPolygon(xPoints2,yPoints2,3);
-			g.drawPolygon(xPoints5,yPoints5,3);
-			g.drawPolygon(xPoints6,yPoints6,3);
-			g.drawPolygon(xPoints7,yPoints7,3);
-			g.drawPolygon(xPoints8,yPoints8,3);
+			drawRuleCell(g,sprites,i*16+2,x,y);
 
 			/* Draw an arrow to connect the source of the rule to the
 			 * target of the rule */
+			g.setColor(Color.BLACK);
 			drawArrow(g2,x+9*cellsize/2,y+3*cellsize/2,cellsize);
 
 			/* Transition rule target cell (and neighbouring subcells) */
 
 			/* Add some distance horizontally from the source of the rule */
 			x+=6*cellsize;
-
-			/* Top subcell vertices coordinates */
-			int[] RxPoints = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] RyPoints={(y+cellsize),(y+cellsize+cellsize/2),(y+cellsize)};
-
-			/* Bottom subcell vertices coordinates */
-			int[] RxPoints2 = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] RyPoints2={(y+2*cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Left subcell vertices coordinates */
-			int[] RxPoints3 = {(x+cellsize),(x+cellsize+cellsize/2),(x+cellsize)};
-			int[] RyPoints3={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Right subcell vertices coordinates */
-			int[] RxPoints4 = {(x+2*cellsize),(x+cellsize+cellsize/2),(x+2*cellsize)};
-			int[] RyPoints4={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Top neighbouring subcell vertices coordinates */
-			int[] RxPoints5 = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] RyPoints5={(y+cellsize),(y+cellsize-cellsize/2),(y+cellsize)};
-
-			/* Bottom neighbouring subcell vertices coordinates */
-			int[] RxPoints6 = {(x+cellsize),(x+cellsize+cellsize/2),((x+cellsize+cellsize))};
-			int[] RyPoints6={(y+2*cellsize),(y+2*cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Left neighbouring subcell vertices coordinates */
-			int[] RxPoints7 = {(x+cellsize),(x+cellsize-cellsize/2),(x+cellsize)};
-			int[] RyPoints7={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Right neighbouring subcell vertices coordinates */
-			int[] RxPoints8 = {(x+2*cellsize),(x+2*cellsize+cellsize/2),(x+2*cellsize)};
-			int[] RyPoints8={(y+cellsize),(y+cellsize+cellsize/2),(y+2*cellsize)};
-
-			/* Set the appropriate colour for the top subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+10]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints,RyPoints,3);
-			
-			/* Set the appropriate colour for the bottom subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+11]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints2,RyPoints2,3);
-			
-			/* Set the appropriate colour for the left subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+12]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints3,RyPoints3,3);
-			
-			/* Set the appropriate colour for the right subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+13]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints4,RyPoints4,3);
-			
-			/* Set the appropriate colour for the top neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+14]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints5,RyPoints5,3);		
-			
-			/* Set the appropriate colour for the bottom neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+15]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints6,RyPoints6,3);
-			
-			/* Set the appropriate colour for the left neighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+16]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints7,RyPoints7,3);		
-			
-			/* Set the appropriate colour for the rightneighbouring subcell based on the rules and
-			 * fill it with the colour */
-			if(Rules.rules[GlobalAttributes.automata][i*16+17]==1){
-				g.setColor(GlobalAttributes.state1);
-			}
-			else{
-				g.setColor(GlobalAttributes.state0);
-			}
-			g.fillPolygon(RxPoints8,RyPoints8,3);
-
-			/* Draw black outlines around all the target of the rule's subcells */
-			g.setColor(Color.BLACK);
-			g.drawRect(x+cellsize, y+cellsize, cellsize, cellsize);
-			g.drawPolygon(RxPoints,RyPoints,3);
-			g.drawPolygon(RxPoints2,RyPoints2,3);
-			g.drawPolygon(RxPoints5,RyPoints5,3);
-			g.drawPolygon(RxPoints6,RyPoints6,3);
-			g.drawPolygon(RxPoints7,RyPoints7,3);
-			g.drawPolygon(RxPoints8,RyPoints8,3);
+			drawRuleCell(g,sprites,i*16+10,x,y);
 
 			/* Add some width to put distance between this rule and the next */
 			x+=6*cellsize;
 		}
 	}  
 
+	/* Draws one side of a rule (the source or the target, whose eight subcells start at the
+	 * given index of the STCA's rules) with the cell at x+cellsize,y+cellsize: the cell is
+	 * copied from the sprite of its state, and the neighbouring subcells are drawn around it */
+	private void drawRuleCell(Graphics g, CellSprites sprites, int index, int x, int y){
+		byte[] rule = Rules.rules[GlobalAttributes.automata];
+		int cellsize = sprites.cellsize;
+		int state = 0;
+		if(rule[index]==1){
+			state|=CellGrid.TOP;
+		}
+		if(rule[index+1]==1){
+			state|=CellGrid.BOTTOM;
+		}
+		if(rule[index+2]==1){
+			state|=CellGrid.LEFT;
+		}
+		if(rule[index+3]==1){
+			state|=CellGrid.RIGHT;
+		}
+		sprites.draw(g,state,x+cellsize,y+cellsize);
+
+		/* Top, bottom, left and right neighbouring subcells */
+		drawNeighbour(g,rule[index+4]==1,x+cellsize,y+cellsize,x+cellsize+cellsize/2,y+cellsize-cellsize/2,x+2*cellsize,y+cellsize);
+		drawNeighbour(g,rule[index+5]==1,x+cellsize,y+2*cellsize,x+cellsize+cellsize/2,y+2*cellsize+cellsize/2,x+2*cellsize,y+2*cellsize);
+		drawNeighbour(g,rule[index+6]==1,x+cellsize,y+cellsize,x+cellsize-cellsize/2,y+cellsize+cellsize/2,x+cellsize,y+2*cellsize);
+		drawNeighbour(g,rule[index+7]==1,x+2*cellsize,y+cellsize,x+2*cellsize+cellsize/2,y+cellsize+cellsize/2,x+2*cellsize,y+2*cellsize);
+	}
+
+	/* Fills the neighbouring subcell with the given corners in the colour of its state, and
+	 * draws its black outline (reusing the same arrays of corners for every subcell) */
+	private void drawNeighbour(Graphics g, boolean state, int x1, int y1, int x2, int y2, int x3, int y3){
+		xCorners[0]=x1;
+		xCorners[1]=x2;
+		xCorners[2]=x3;
+		yCorners[0]=y1;
+		yCorners[1]=y2;
+		yCorners[2]=y3;
+		if(state){
+			g.setColor(GlobalAttributes.state1);
+		}
+		else{
+			g.setColor(GlobalAttributes.state0);
+		}
+		g.fillPolygon(xCorners,yCorners,3);
+		g.setColor(Color.BLACK);
+		g.drawPolygon(xCorners,yCorners,3);
+	}
+
 	/* Draws an arrow pointing from left to right, twice as wide as the cellsize,
 	 * where the center of the arrow is the coordinates x,y */
 	public void drawArrow(Graphics2D g, int x, int y,int cellsize){
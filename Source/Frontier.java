@@ -0,0 +1,258 @@
+import java.util.SplittableRandom;
+
+/* The frontier of a cell space - the set of interior cells whose neighbourhood currently matches
+ * a rule of the STCA, i.e. the cells at which a transition can take place. Choosing uniformly from
+ * the frontier is equivalent to choosing uniformly from all cells and retrying until a transition
+ * happens, but without the wasted attempts on quiescent cells. After a transition only the fired
+ * cell and its four neighbours can change whether they are enabled, so the set is kept up to date
+ * by re-checking just those five cells. A frontier can also cover just a rectangular region of the
+ * grid (a tile of TiledEngine), holding only the enabled cells inside it */
+public class Frontier {
+
+	/* The cell space the frontier belongs to */
+	final CellGrid grid;
+
+	/* Region covered - columns x0 to x1-1 and rows y0 to y1-1 */
+	final int x0;
+	final int y0;
+	final int x1;
+	final int y1;
+
+	/* STCA the frontier was last built for */
+	int automata;
+
+	/* Enabled cells, as indices y*width+x, in no particular order */
+	long[] cells;
+	int size;
+
+	/* Position of each enabled cell in the cells array */
+	LongIntMap positions;
+
+	/* Bit for each enabled cell (indexed as the grid's bitplanes), used when rebuilding the
+	 * frontier of the whole grid */
+	long[] enabled;
+
+	/* Work space for fireMaximal - the enabled cells in random order, and a bit (indexed as the
+	 * grid's bitplanes) for each cell chosen or next to one chosen */
+	long[] order;
+	long[] blocked;
+
+	/* Constructor - builds the frontier of the given grid for the current STCA */
+	public Frontier(CellGrid grid){
+		this(grid,0,0,grid.width,grid.height);
+	}
+
+	/* Constructor - builds the frontier of a region of the given grid (columns x0 to x1-1 and rows
+	 * y0 to y1-1) for the current STCA */
+	public Frontier(CellGrid grid, int x0, int y0, int x1, int y1){
+		this.grid=grid;
+		this.x0=x0;
+		this.y0=y0;
+		this.x1=x1;
+		this.y1=y1;
+		cells=new long[64];
+		positions=new LongIntMap(64);
+		if(isWholeGrid()){
+			enabled=new long[grid.top.length];
+		}
+		rebuild();
+	}
+
+	/* True if the frontier covers the whole grid */
+	boolean isWholeGrid(){
+		return x0==0 && y0==0 && x1==grid.width && y1==grid.height;
+	}
+
+	/* Checks every interior cell of the region again, for the current STCA, 64 cells at a time.
+	 * Needed whenever the grid or the STCA changes other than by transitions reported to update */
+	void rebuild(){
+		automata=GlobalAttributes.automata;
+		size=0;
+		positions.clear();
+		if(isWholeGrid()){
+			BitslicedMatcher.findEnabled(grid,automata,enabled);
+			for(int i=0;i<enabled.length;i++){
+				addWord(i/grid.wordsPerRow,i%grid.wordsPerRow,enabled[i]);
+			}
+			return;
+		}
+
+		/* Just the words of the region's rows (apart from the grid's top and bottom rows) which
+		 * hold its columns */
+		short[] pairs=BitslicedMatcher.enabledPairs(automata);
+		long[] own=new long[16];
+		long[] facing=new long[16];
+		for(int y=Math.max(y0,1);y<Math.min(y1,grid.height-1);y++){
+			for(int w=x0>>>6;w<=(x1-1)>>>6;w++){
+				long columns=-1L;
+				if(w==x0>>>6){
+					columns&=-1L<<x0;
+				}
+				if(w==(x1-1)>>>6){
+					columns&=-1L>>>(63-((x1-1)&63));
+				}
+				addWord(y,w,BitslicedMatcher.matchWord(grid,pairs,y,w,own,facing)&columns);
+			}
+		}
+	}
+
+	/* Adds the enabled cells given by the bits of word w of row y */
+	private void addWord(int y, int w, long bits){
+		while(bits!=0){
+			int x=(w<<6)+Long.numberOfTrailingZeros(bits);
+			add((long)y*grid.width+x);
+			bits&=bits-1;
+		}
+	}
+
+	/* Re-checks the cell x,y and its four neighbours, after a change to the cell's subcells */
+	void update(int x, int y){
+		check(x,y);
+		check(x,y-1);
+		check(x,y+1);
+		check(x-1,y);
+		check(x+1,y);
+	}
+
+	/* Re-checks the cells around the edges of the region, after transitions just outside it
+	 * (which can only change whether the cells next to them are enabled) */
+	void updateEdges(){
+		for(int x=x0;x<x1;x++){
+			check(x,y0);
+			check(x,y1-1);
+		}
+		for(int y=y0+1;y<y1-1;y++){
+			check(x0,y);
+			check(x1-1,y);
+		}
+	}
+
+	/* Adds the cell x,y to or removes it from the frontier, depending on whether it is enabled
+	 * (cells outside the region, or on the edge of the grid, are never added) */
+	private void check(int x, int y){
+		if(x>0 && x<grid.width-1 && y>0 && y<grid.height-1 && x>=x0 && x<x1 && y>=y0 && y<y1){
+			long cell=(long)y*grid.width+x;
+			boolean enabled=ApplyRule.isEnabled(x,y,grid);
+			if(enabled && positions.get(cell)<0){
+				add(cell);
+			}
+			else if(!enabled && positions.get(cell)>=0){
+				remove(cell);
+			}
+		}
+	}
+
+	/* Adds a cell which is not in the frontier */
+	private void add(long cell){
+		if(size==cells.length){
+			long[] larger=new long[cells.length*2];
+			System.arraycopy(cells,0,larger,0,size);
+			cells=larger;
+		}
+		positions.put(cell,size);
+		cells[size++]=cell;
+	}
+
+	/* Removes a cell which is in the frontier, moving the last cell into its place */
+	private void remove(long cell){
+		int position=positions.get(cell);
+		long last=cells[--size];
+		cells[position]=last;
+		if(last!=cell){
+			positions.put(last,position);
+		}
+		positions.remove(cell);
+	}
+
+	/* True if no transition can take place anywhere in the region */
+	boolean isEmpty(){
+		return size==0;
+	}
+
+	/* Returns a uniformly chosen cell of the frontier (as y*width+x). The frontier must not be empty */
+	long sample(SplittableRandom random){
+		return cells[CellSampler.bounded(random,size)];
+	}
+
+	/* Applies a transition at a uniformly chosen enabled cell and updates the frontier.
+	 * Returns the index of the fired cell (y*width+x), or -1 if no cell is enabled */
+	long fire(SplittableRandom random){
+		if(size==0){
+			return -1;
+		}
+		long cell=sample(random);
+		int x=(int)(cell%grid.width);
+		int y=(int)(cell/grid.width);
+		ApplyRule.executeTransition(x,y,grid);
+		update(x,y);
+		return cell;
+	}
+
+	/* Applies transitions at a randomly chosen maximal set of enabled cells no two of which are the
+	 * same or next to each other, and updates the frontier. The enabled cells are taken in random
+	 * order, each one being chosen unless it is next to one already chosen. Transitions at cells which
+	 * are not next to each other do not affect each other (each one only reads and writes its own
+	 * cell and its four neighbours), so this is the same as applying them one after another in any
+	 * order. Returns the number of transitions */
+	int fireMaximal(SplittableRandom random){
+		if(order==null || order.length<size){
+			order=new long[cells.length];
+		}
+		if(blocked==null){
+			blocked=new long[grid.top.length];
+		}
+
+		/* Shuffle the enabled cells */
+		int count=size;
+		System.arraycopy(cells,0,order,0,count);
+		for(int i=count-1;i>0;i--){
+			int j=CellSampler.bounded(random,i+1);
+			long cell=order[i];
+			order[i]=order[j];
+			order[j]=cell;
+		}
+
+		/* Choose each cell which is not next to one already chosen, moving them to the front */
+		int chosen=0;
+		for(int i=0;i<count;i++){
+			long cell=order[i];
+			int x=(int)(cell%grid.width);
+			int y=(int)(cell/grid.width);
+			if((blocked[grid.word(x,y)]>>>x&1)==0){
+				block(x,y,true);
+				order[chosen++]=cell;
+			}
+		}
+
+		/* Apply the transitions, then bring the frontier up to date and clear the marks */
+		for(int i=0;i<chosen;i++){
+			ApplyRule.executeTransition((int)(order[i]%grid.width),(int)(order[i]/grid.width),grid);
+		}
+		for(int i=0;i<chosen;i++){
+			int x=(int)(order[i]%grid.width);
+			int y=(int)(order[i]/grid.width);
+			update(x,y);
+			block(x,y,false);
+		}
+		return chosen;
+	}
+
+	/* Sets or clears the blocked bits of the cell x,y and its four neighbours */
+	private void block(int x, int y, boolean value){
+		setBlocked(x,y,value);
+		setBlocked(x,y-1,value);
+		setBlocked(x,y+1,value);
+		setBlocked(x-1,y,value);
+		setBlocked(x+1,y,value);
+	}
+
+	/* Sets or clears the blocked bit of one cell */
+	private void setBlocked(int x, int y, boolean value){
+		if(value){
+			blocked[grid.word(x,y)]|=1L<<x;
+		}
+		else{
+			blocked[grid.word(x,y)]&=~(1L<<x);
+		}
+	}
+}
@@ -1,5 +1,4 @@
 import java.awt.Color;
-import java.util.Random;
 
 /* List of static attributes which are program-wide */
 public class GlobalAttributes {
@@ -7,10 +6,11 @@ public class GlobalAttributes {
 	/* Number of pixels wide that a square cell should be */
 	static int cellsize=30;
 	
-	/* Number of cells in the x-direction */
+	/* Default number of cells in the x-direction (each cell space records its own size, this
+	 * is used for new cell spaces and for configuration files which do not record a size) */
 	static int xCells = 30;
 	
-	/* Number of cells in the y-direction */
+	/* Default number of cells in the y-direction */
 	static int yCells = 23;
 	
 	/* Colour of cells in state 0 */
@@ -28,12 +28,15 @@ public class GlobalAttributes {
 	/* STCA (set of rules) which is currently chosen, numbered 0,1,2... etc. */
 	static int automata=0;
 	
-	/* Initial seed for the random number generator */
+	/* 0 is the default execution mode, where a single cell undergoes a transition at a time,
+	 * 1 means a random maximal set of cells which are not next to each other undergo transitions
+	 * at once (see Frontier.fireMaximal),
+	 * 2 means cells undergo transitions after random delays in simulated time (see TimedScheduler) */
+	static int mode=0;
+
+	/* Initial seed for the random number streams (see RandomStreams) */
 	static int initialseed=245435;
 	
-	/* Random number generator */
-	static Random random=new Random(initialseed);
-	
 	/* 1 means the program is in "add annotation mode" where annotations can be added to the cell space
 	 * via clicking,
 	 * 2 means the program is in "remove annotation mode" where annotations can be removed from the cell space
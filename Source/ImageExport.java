@@ -0,0 +1,63 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Vector;
+
+import javax.imageio.ImageIO;
+
+/* Class for saving a picture of a configuration without the GUI, e.g. of the result of a batch
+ * run on a server with no display. The cells are drawn as in the GUI, from the same sprites
+ * (see CellSprites). Usage:
+ *
+ *   java ImageExport <input.con> <output.png> [cellsize]
+ *
+ * where cellsize is the width of a cell in pixels (the GUI's cell size if not given) */
+public class ImageExport {
+
+	/* Largest picture saved (in pixels), as the whole picture is held in memory */
+	static final long MAX_PIXELS=Integer.MAX_VALUE/4;
+
+	/* Program entry point for exporting pictures */
+	public static void main(String[] args){
+
+		/* Nothing here needs a display, make sure none is ever asked for */
+		System.setProperty("java.awt.headless","true");
+
+		if(args.length<2 || args.length>3){
+			System.err.println("Usage: java ImageExport <input.con> <output.png> [cellsize]");
+			System.exit(1);
+		}
+
+		try{
+			int cellsize=args.length>2 ? Integer.parseInt(args[2]) : GlobalAttributes.cellsize;
+			if(cellsize<2){
+				throw new IllegalArgumentException("cellsize must be at least 2");
+			}
+			CellGrid grid=ConfigurationFile.load(args[0],new Vector<String>(),new Vector<Integer>());
+			CellSprites sprites=new CellSprites(cellsize,GlobalAttributes.state0,GlobalAttributes.state1);
+			ImageIO.write(draw(grid,sprites),"png",new File(args[1]));
+		}
+		catch(Exception e){
+			System.err.println("Export failed: "+e);
+			System.exit(1);
+		}
+	}
+
+	/* Returns a picture of every cell of the given grid, drawn with the given sprites */
+	static BufferedImage draw(CellGrid grid, CellSprites sprites){
+		int cellsize=sprites.cellsize;
+		long pixels=((long)grid.width*cellsize+1)*((long)grid.height*cellsize+1);
+		if(pixels>MAX_PIXELS){
+			throw new IllegalArgumentException("picture of "+pixels+" pixels is too large, use a smaller cellsize");
+		}
+		BufferedImage image=new BufferedImage(grid.width*cellsize+1,grid.height*cellsize+1,BufferedImage.TYPE_INT_RGB);
+		Graphics2D g=image.createGraphics();
+		for(int j=0;j<grid.height;j++){
+			for(int i=0;i<grid.width;i++){
+				sprites.draw(g,grid.get(i,j),i*cellsize,j*cellsize);
+			}
+		}
+		g.dispose();
+		return image;
+	}
+}
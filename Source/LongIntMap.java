@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/* A map from non-negative long keys (such as cell indices) to int values, stored in primitive
+ * arrays using open addressing with linear probing, so that no objects are created when entries
+ * are added, looked up or removed */
+public class LongIntMap {
+
+	/* Marks an unused slot in the keys array */
+	static final long EMPTY=-1;
+
+	/* Keys and their values, at the same positions */
+	long[] keys;
+	int[] values;
+
+	/* Number of entries in the map */
+	int size;
+
+	/* Number of slots minus one (the number of slots is always a power of 2) */
+	int mask;
+
+	/* Constructor - creates an empty map able to hold the given number of entries before growing */
+	public LongIntMap(int capacity){
+		int slots=16;
+		while(slots<capacity*2){
+			slots<<=1;
+		}
+		keys=new long[slots];
+		values=new int[slots];
+		Arrays.fill(keys,EMPTY);
+		mask=slots-1;
+	}
+
+	/* Slot at which to start searching for the given key */
+	int slot(long key){
+		key*=0x9E3779B97F4A7C15L;
+		return (int)(key^(key>>>32))&mask;
+	}
+
+	/* Returns the value for the given key, or -1 if the key is not in the map */
+	int get(long key){
+		for(int i=slot(key);;i=(i+1)&mask){
+			if(keys[i]==key){
+				return values[i];
+			}
+			if(keys[i]==EMPTY){
+				return -1;
+			}
+		}
+	}
+
+	/* Sets the value for the given key, adding the key if it is not already in the map */
+	void put(long key, int value){
+		int i=slot(key);
+		while(keys[i]!=EMPTY && keys[i]!=key){
+			i=(i+1)&mask;
+		}
+		if(keys[i]==EMPTY){
+			keys[i]=key;
+			size++;
+		}
+		values[i]=value;
+
+		/* Keep the map at most half full so searches stay short */
+		if(size*2>keys.length){
+			grow();
+		}
+	}
+
+	/* Removes the given key (if it is in the map) */
+	void remove(long key){
+		int i=slot(key);
+		while(keys[i]!=key){
+			if(keys[i]==EMPTY){
+				return;
+			}
+			i=(i+1)&mask;
+		}
+		size--;
+
+		/* Shift any following entries back into the gap if their search would otherwise
+		 * stop at it, so that no "deleted" markers are needed */
+		int gap=i;
+		for(i=(i+1)&mask;keys[i]!=EMPTY;i=(i+1)&mask){
+			int home=slot(keys[i]);
+			if(((i-home)&mask)>=((i-gap)&mask)){
+				keys[gap]=keys[i];
+				values[gap]=values[i];
+				gap=i;
+			}
+		}
+		keys[gap]=EMPTY;
+	}
+
+	/* Removes every entry */
+	void clear(){
+		Arrays.fill(keys,EMPTY);
+		size=0;
+	}
+
+	/* Doubles the number of slots and re-inserts every entry */
+	private void grow(){
+		long[] oldKeys=keys;
+		int[] oldValues=values;
+		keys=new long[oldKeys.length*2];
+		values=new int[oldKeys.length*2];
+		Arrays.fill(keys,EMPTY);
+		mask=keys.length-1;
+		for(int i=0;i<oldKeys.length;i++){
+			if(oldKeys[i]!=EMPTY){
+				int j=slot(oldKeys[i]);
+				while(keys[j]!=EMPTY){
+					j=(j+1)&mask;
+				}
+				keys[j]=oldKeys[i];
+				values[j]=oldValues[i];
+			}
+		}
+	}
+}
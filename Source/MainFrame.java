@@ -13,6 +13,7 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 
 /* The class which generates the GUI and also listens to GUI events */
@@ -39,6 +40,13 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 	 * attempting to apply a transition when executing */
 	JTextField speed = new JTextField(3);
 
+	/* Chooses whether a single cell or a maximal set of cells undergoes transitions at each step */
+	@SuppressWarnings("rawtypes")
+	JComboBox mode = new JComboBox();
+
+	/* Shows the simulated time in the timed execution mode */
+	static JLabel clock = new JLabel(" ");
+
 	/* Lists all of the saved configuration files */
 	@SuppressWarnings("rawtypes")
 	JComboBox files = new JComboBox();
@@ -54,6 +62,13 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 	static JFrame instance;
 	static CellSpace cellSpace = new CellSpace();
 
+	/* Scrollable view of the cellspace, which stays the same size whatever the size of the cellspace */
+	JScrollPane cellSpaceView = new JScrollPane(cellSpace);
+
+	/* Fields for the user to change the number of cells in each direction (applied when resetting) */
+	JTextField xCells = new JTextField(5);
+	JTextField yCells = new JTextField(5);
+
 	/* Field for the user to change the random number generator seed value */
 	JTextField seed = new JTextField(5);
 
@@ -83,10 +98,15 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 		this.setTitle("STCA Simulator");
 		
 		/* Set the size of the cellspace based on the number of cells in the horizontal direction
-		 * multiplied by their size, and the same for the vertical direction, then make it visible */
+		 * multiplied by their size, and the same for the vertical direction, then make it visible.
+		 * The view of it is always this (default) size, and scrolls if the cellspace is larger */
 		cellSpace.setPreferredSize(new Dimension(GlobalAttributes.xCells*GlobalAttributes.cellsize,
 				GlobalAttributes.yCells*GlobalAttributes.cellsize));
 		cellSpace.setVisible(true);
+		cellSpaceView.setPreferredSize(new Dimension(GlobalAttributes.xCells*GlobalAttributes.cellsize+3,
+				GlobalAttributes.yCells*GlobalAttributes.cellsize+3));
+		cellSpaceView.getHorizontalScrollBar().setUnitIncrement(GlobalAttributes.cellsize);
+		cellSpaceView.getVerticalScrollBar().setUnitIncrement(GlobalAttributes.cellsize);
 
 		/* Make the control panel always 200 pixels wide, and the height the same as the cellspace */
 		controlPanel.setPreferredSize(new Dimension(300,
@@ -98,7 +118,7 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 		/* Add the 2 panels to the main window - Cellspace on the left
 		 * and control panel on the right */
 		getContentPane().setLayout(new FlowLayout());
-		getContentPane().add(cellSpace);
+		getContentPane().add(cellSpaceView);
 		getContentPane().add(controlPanel);
 
 		/* Make the window visible, non-resizable and able to terminate the program */
@@ -123,6 +143,13 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			automata.addItem(Rules.names[i]);
 		}
 
+		/* Set size and colour of the execution mode combobox, and add the modes (in the
+		 * order of their numbers in GlobalAttributes) */
+		mode.setBackground(Color.WHITE);
+		mode.addItem("Single cell");
+		mode.addItem("Maximal set");
+		mode.addItem("Timed");
+
 		/* Set size and colour of saved configuration files combobox */
 		files.setBackground(Color.WHITE);
 		files.setPreferredSize(new Dimension(300,20));
@@ -147,6 +174,17 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 		controlPanel.add(speed);
 		controlPanel.add(new JLabel("ms"));
 		controlPanel.add(Box.createRigidArea(new Dimension(500,1)));
+		controlPanel.add(new JLabel("Step:"));
+		controlPanel.add(mode);
+		controlPanel.add(Box.createRigidArea(new Dimension(500,1)));
+		controlPanel.add(clock);
+		controlPanel.add(Box.createRigidArea(new Dimension(500,1)));
+		controlPanel.add(new JLabel("Size:"));
+		controlPanel.add(xCells);
+		controlPanel.add(new JLabel("x"));
+		controlPanel.add(yCells);
+		controlPanel.add(new JLabel("cells"));
+		controlPanel.add(Box.createRigidArea(new Dimension(500,1)));
 		controlPanel.add(new JLabel("Random Seed:"));
 		controlPanel.add(seed);
 		controlPanel.add(Box.createRigidArea(new Dimension(500,1)));
@@ -180,6 +218,8 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 		stop.setEnabled(false);
 		speed.setText(Integer.toString(GlobalAttributes.speed));
 		seed.setText(Integer.toString(GlobalAttributes.initialseed));
+		xCells.setText(Integer.toString(GlobalAttributes.xCells));
+		yCells.setText(Integer.toString(GlobalAttributes.yCells));
 
 		/* Set various components event listener as this class */
 		start.addActionListener(this);
@@ -217,12 +257,15 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			automata.setEnabled(false);
 			files.setEnabled(false);
 			speed.setEnabled(false);
+			mode.setEnabled(false);
 			examine.setEnabled(false);
 			path.setEnabled(false);
 			annotate.setEnabled(false);
 			deAnnotate.setEnabled(false);
 			exitAnnotate.setEnabled(false);
 			seed.setEnabled(false);
+			xCells.setEnabled(false);
+			yCells.setEnabled(false);
 
 			/* Try to parse a new speed (wait time) value and set it
 			 * if successful. Otherwise don't do anything (not even
@@ -234,12 +277,17 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			catch(Exception e){
 			}
 
-			/* Try to parse a new seed (for the random number generator) 
-			 * value and set it if successful. Otherwise don't do 
-			 * anything (not even worth throwing an error) */
+			/* Set the execution mode chosen */
+			GlobalAttributes.mode=mode.getSelectedIndex();
+
+			/* Try to parse a new seed (for the random number streams) 
+			 * value and set it if successful, restarting the cell space's
+			 * stream from it. Otherwise don't do anything (not even
+			 * worth throwing an error) */
 			try{
 				int newseed=Integer.parseInt(seed.getText());
-				GlobalAttributes.random.setSeed(newseed);
+				RandomStreams.setSeed(newseed);
+				cellSpace.random=RandomStreams.stream(RandomStreams.SIMULATION);
 			}
 			catch(Exception e){
 			}
@@ -283,18 +331,32 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			automata.setEnabled(true);
 			files.setEnabled(true);
 			speed.setEnabled(true);
+			mode.setEnabled(true);
 			examine.setEnabled(true);
 			path.setEnabled(true);
 			annotate.setEnabled(true);
 			deAnnotate.setEnabled(true);
 			exitAnnotate.setEnabled(true);
 			seed.setEnabled(true);
+			xCells.setEnabled(true);
+			yCells.setEnabled(true);
 		}
 
 		/* If the reset button is clicked then signal the cellspace
-		 * to wipe all cells */
+		 * to wipe all cells - if a new size has been entered then
+		 * the cellspace is replaced with a blank one of that size */
 		else if (arg0.getActionCommand().equals("Reset")){
 			cellSpace.clear();
+			try{
+				int newX=Integer.parseInt(xCells.getText());
+				int newY=Integer.parseInt(yCells.getText());
+				if(newX>=3 && newY>=3 && (newX!=cellSpace.grid.width || newY!=cellSpace.grid.height)){
+					cellSpace.newGrid(newX,newY);
+				}
+			}
+			catch(Exception e){
+			}
+			showSize();
 			cellSpace.repaint();
 		}
 
@@ -347,8 +409,19 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			/* If a file is actually selected, signal the cellspace to clear the cells, load the selected
 			 * file, and then repaint itself in the new configuration */
 			if(files.getSelectedIndex()!=-1){
+				String name=files.getSelectedItem().toString()+".con";
 				cellSpace.clear();
-				cellSpace.load(files.getSelectedItem().toString()+".con");
+				cellSpace.load(name);
+				showSize();
+
+				/* Choose the STCA the configuration was saved with, if the file records it */
+				try{
+					int recorded=ConfigurationFile.automaton(name);
+					if(recorded>=0 && recorded<automata.getItemCount()){
+						automata.setSelectedIndex(recorded);
+					}
+				}
+				catch(Exception e){}
 				cellSpace.repaint();
 			}
 		}
@@ -396,6 +469,7 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			automata.setEnabled(false);
 			files.setEnabled(false);
 			speed.setEnabled(false);
+			mode.setEnabled(false);
 			examine.setEnabled(false);
 			path.setEnabled(false);
 			annotate.setEnabled(false);
@@ -415,6 +489,7 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			automata.setEnabled(false);
 			files.setEnabled(false);
 			speed.setEnabled(false);
+			mode.setEnabled(false);
 			examine.setEnabled(false);
 			path.setEnabled(false);
 			annotate.setEnabled(false);
@@ -435,6 +510,7 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 			automata.setEnabled(true);
 			files.setEnabled(true);
 			speed.setEnabled(true);
+			mode.setEnabled(true);
 			examine.setEnabled(true);
 			path.setEnabled(true);
 			annotate.setEnabled(true);
@@ -446,6 +522,12 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 		}
 	}
 
+	/* Displays the current size of the cellspace in the size fields */
+	void showSize(){
+		xCells.setText(Integer.toString(cellSpace.grid.width));
+		yCells.setText(Integer.toString(cellSpace.grid.height));
+	}
+
 	/* Loads the list of names of all configuration files found in the program folder
 	 * and adds them to the files combobox */
 	@SuppressWarnings("unchecked")
@@ -478,9 +560,11 @@ public class MainFrame extends JFrame implements ActionListener, ItemListener{
 	public void itemStateChanged(ItemEvent arg0) {
 		if (arg0.getStateChange() == ItemEvent.SELECTED) {
 
-			/* Set the current STCA to the selected one, software-wide, and repaint the cellspace
-			 * (in case no. of states has changed and this results in new colours) */
+			/* Set the current STCA to the selected one, software-wide, compile its rules into
+			 * a transition table, and repaint the cellspace (in case no. of states has changed
+			 * and this results in new colours) */
 			GlobalAttributes.automata=((JComboBox)(arg0.getSource())).getSelectedIndex();
+			ApplyRule.compileRules(GlobalAttributes.automata);
 			cellSpace.repaint();
 		}
 	}
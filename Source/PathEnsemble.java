@@ -0,0 +1,230 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Runs many independent randomised tests of whether a source configuration reaches a target
+ * configuration, spread over all processor cores. Each worker thread has its own copy of the grid,
+ * and each trial has its own random number stream split (in trial order) from one master stream, so
+ * the results for a given seed are the same however many threads are used. The outcome counts are
+ * collected in adders which the workers update without blocking each other.
+ *
+ * Can also be run without the GUI:
+ *
+ *   java PathEnsemble <source.con> <target.con> <automaton> <seed> <trials> */
+public class PathEnsemble {
+
+	/* Default number of transitions after which a trial which has neither reached the target nor
+	 * deadlocked is given up on and counted as unfinished (e.g. a circuit which cycles forever) */
+	static final long STEP_LIMIT=100000000;
+
+	/* Possible outcomes of a trial */
+	static final int REACHED=0;
+	static final int DEADLOCK=1;
+	static final int UNFINISHED=2;
+	static final int STOPPED=3;
+
+	/* The starting and (ideal) final configurations */
+	final CellGrid source;
+	final CellGrid target;
+
+	/* Number of cells which differ between the source and target configurations */
+	final long fixeddifferences;
+
+	/* Number of trials to run, and the number handed out to workers so far */
+	final long trials;
+	long started=0;
+
+	/* Stream every trial's random number stream is split from */
+	final SplittableRandom master;
+
+	/* Number of transitions after which a trial is counted as unfinished */
+	long stepLimit=STEP_LIMIT;
+
+	/* Set to end the run early */
+	volatile boolean stopped=false;
+
+	/* Thread pool running the trials */
+	ExecutorService workers;
+
+	/* Outcome counts, and statistics about the number of transitions taken to reach the target */
+	final LongAdder reached=new LongAdder();
+	final LongAdder deadlocks=new LongAdder();
+	final LongAdder unfinished=new LongAdder();
+	final LongAdder stepsToTarget=new LongAdder();
+	final LongAccumulator fewestSteps=new LongAccumulator(Math::min,Long.MAX_VALUE);
+	final LongAccumulator mostSteps=new LongAccumulator(Math::max,0);
+
+	/* Constructor - the source and target configurations must be the same size */
+	public PathEnsemble(CellGrid source, CellGrid target, long trials, SplittableRandom master){
+		this.source=source;
+		this.target=target;
+		this.trials=trials;
+		fixeddifferences=source.countDifferences(target);
+		this.master=master;
+	}
+
+	/* Starts the trials on the given number of threads, for the current STCA, and returns
+	 * straight away */
+	void start(int threads){
+
+		/* Build the transition table before any worker can ask for it */
+		ApplyRule.compileRules(GlobalAttributes.automata);
+
+		workers=Executors.newFixedThreadPool(threads);
+		for(int i=0;i<threads;i++){
+			workers.execute(new Runnable(){
+				@Override
+				public void run(){
+					work();
+				}
+			});
+		}
+		workers.shutdown();
+	}
+
+	/* Waits up to the given number of milliseconds for every trial to finish, and returns
+	 * whether they have */
+	boolean awaitFinish(long millis) throws InterruptedException{
+		return workers.awaitTermination(millis,TimeUnit.MILLISECONDS);
+	}
+
+	/* Ends the run early - trials in progress are abandoned and not counted */
+	void stop(){
+		stopped=true;
+	}
+
+	/* Number of trials which have finished so far */
+	long completed(){
+		return reached.sum()+deadlocks.sum()+unfinished.sum();
+	}
+
+	/* Returns the random number stream for the next trial, or null if all trials have started */
+	synchronized SplittableRandom nextTrial(){
+		if(started==trials || stopped){
+			return null;
+		}
+		started++;
+		return master.split();
+	}
+
+	/* Execution logic for each worker thread - keeps taking trials until none are left */
+	void work(){
+		CellGrid grid=new CellGrid(source.width,source.height);
+		Frontier frontier=new Frontier(grid);
+		long[] steps=new long[1];
+		SplittableRandom random;
+		while((random=nextTrial())!=null){
+			int outcome=trial(grid,frontier,random,steps);
+			if(outcome==REACHED){
+				reached.increment();
+				stepsToTarget.add(steps[0]);
+				fewestSteps.accumulate(steps[0]);
+				mostSteps.accumulate(steps[0]);
+			}
+			else if(outcome==DEADLOCK){
+				deadlocks.increment();
+			}
+			else if(outcome==UNFINISHED){
+				unfinished.increment();
+			}
+		}
+	}
+
+	/* Runs one trial in the given grid (and its frontier) starting from the source configuration,
+	 * and returns its outcome. The number of transitions taken is stored in steps[0] */
+	int trial(CellGrid grid, Frontier frontier, SplittableRandom random, long[] steps){
+		grid.copyFrom(source);
+		frontier.rebuild();
+		long differences=fixeddifferences;
+		long step=0;
+		while(differences>0){
+			if(frontier.isEmpty()){
+				return DEADLOCK;
+			}
+			if(step==stepLimit){
+				return UNFINISHED;
+			}
+
+			/* Give the thread chance to stop if requested */
+			if((step&0xFFFF)==0 && stopped){
+				return STOPPED;
+			}
+
+			/* Apply a transition at a randomly chosen enabled cell, and adjust the difference
+			 * counter by however many of the five affected cells have changed whether they
+			 * match the target */
+			long cell=frontier.sample(random);
+			int x=(int)(cell%grid.width);
+			int y=(int)(cell/grid.width);
+			int before=differs(grid,x,y)+differs(grid,x-1,y)+differs(grid,x+1,y)+differs(grid,x,y-1)+differs(grid,x,y+1);
+			ApplyRule.executeTransition(x,y,grid);
+			frontier.update(x,y);
+			differences+=differs(grid,x,y)+differs(grid,x-1,y)+differs(grid,x+1,y)+differs(grid,x,y-1)+differs(grid,x,y+1)-before;
+			step++;
+		}
+		steps[0]=step;
+		return REACHED;
+	}
+
+	/* Returns 1 if the cell at the given coordinates of grid differs from the target configuration, 0 otherwise */
+	int differs(CellGrid grid, int x, int y){
+		if(grid.get(x,y)!=target.get(x,y)){
+			return 1;
+		}
+		return 0;
+	}
+
+	/* Summary of the results so far, one item per line */
+	String[] summary(){
+		long count=reached.sum();
+		String[] lines=new String[4];
+		lines[0]=completed()+" of "+trials+" trials done";
+		lines[1]=count+" reached target";
+		lines[2]=deadlocks.sum()+" deadlocked, "+unfinished.sum()+" unfinished";
+		if(count>0){
+			lines[3]="steps to target: min "+fewestSteps.get()+", mean "+stepsToTarget.sum()/count+", max "+mostSteps.get();
+		}
+		else{
+			lines[3]="steps to target: N/A";
+		}
+		return lines;
+	}
+
+	/* Program entry point for running an ensemble without the GUI */
+	public static void main(String[] args){
+		System.setProperty("java.awt.headless","true");
+		if(args.length!=5){
+			System.err.println("Usage: java PathEnsemble <source.con> <target.con> <automaton> <seed> <trials>");
+			System.exit(1);
+		}
+		try{
+			CellGrid source=ConfigurationFile.load(args[0],null,null);
+			CellGrid target=ConfigurationFile.load(args[1],null,null);
+			if(source.width!=target.width || source.height!=target.height){
+				throw new IllegalArgumentException("configurations are not the same size");
+			}
+			GlobalAttributes.automata=Integer.parseInt(args[2]);
+			if(GlobalAttributes.automata<0 || GlobalAttributes.automata>=Rules.rules.length){
+				throw new IllegalArgumentException("automaton must be between 0 and "+(Rules.rules.length-1));
+			}
+			RandomStreams.setSeed(Long.parseLong(args[3]));
+			PathEnsemble ensemble=new PathEnsemble(source,target,Long.parseLong(args[4]),
+					RandomStreams.stream(RandomStreams.ENSEMBLE));
+			long start=System.nanoTime();
+			ensemble.start(Runtime.getRuntime().availableProcessors());
+			while(!ensemble.awaitFinish(1000)){
+			}
+			for(String line : ensemble.summary()){
+				System.out.println(line);
+			}
+			System.out.println("Time: "+String.format("%.3f",(System.nanoTime()-start)/1e9)+" s");
+		}
+		catch(Exception e){
+			System.err.println("Ensemble run failed: "+e);
+			System.exit(1);
+		}
+	}
+}
@@ -5,9 +5,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.util.SplittableRandom;
 
 import javax.swing.Box;
 import javax.swing.JButton;
@@ -16,6 +15,7 @@ import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.WindowConstants;
 
 /* This class represents the window shown when Path Verification is clicked in the main window.
@@ -30,31 +30,20 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 
 	/* A 2D array of cells representing the current state of the STCA as we perform the check - 
 	 * a CellSpace is not used as we do not need the associated graphical
-	 * or interactive features */
-	Cell[][] grid = new Cell[GlobalAttributes.xCells][GlobalAttributes.yCells];
+	 * or interactive features. All three are sized when the configurations are loaded */
+	CellGrid grid;
 
 	/* A 2D array of cells representing the starting configuration */
-	Cell[][] source = new Cell[GlobalAttributes.xCells][GlobalAttributes.yCells];
+	CellGrid source;
 
 	/* A 2D array of cells representing the (ideal) final configuration */
-	Cell[][] target = new Cell[GlobalAttributes.xCells][GlobalAttributes.yCells];
+	CellGrid target;
 
-	/* A 2D array which stores how "different" the current configuration is from the target configuration.
-	 * A cell in the array is true iff the corresponding cell in the cell space is different from the 
-	 * target configuration's corresponding cell */
-	boolean[][] different = new boolean[GlobalAttributes.xCells][GlobalAttributes.yCells];
+	/* Counter of the number of cells which differ between the current configuration and the target configuration */
+	long differences;
 
-	/* The fixed "initial" difference matrix used to restore the above variable back to the initial configuration's
-	 * difference matrix */
-	boolean[][] fixeddifferent = new boolean[GlobalAttributes.xCells][GlobalAttributes.yCells];
-
-	/* Integer counter of the number of differences between the current configuration and the target configuration
-	 * (Corresopnds to the number of true values in the difference matrix) */
-	int differences;
-
-	/* Fixed number of differences between the initial configuration and the target configuration. (Corresponds
-	 * to the number of true values in the fixed difference matrix) */
-	int fixeddifferences;
+	/* Fixed number of cells which differ between the initial configuration and the target configuration */
+	long fixeddifferences;
 
 	/* Records how many tests have been carried out since pressing Begin */
 	int completed;
@@ -62,13 +51,14 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 	/* Records whether to output debugging information to system console */
 	int output=0;
 
-	/* Records whether the system should not attempt an "exhaustive" approach to trying transitions
-	 * - after a sufficient number of failed rule matches, the system basically iterates through every
-	 * single cell from top-left to bottom-right and tries to match against a rule - this is how deadlock
-	 * detection works */
-	int exhaust=0;
+	/* Cells of the grid at which a transition can currently take place - kept up to date after
+	 * every transition, so deadlock is detected the moment it becomes empty */
+	Frontier frontier;
 
-	/* Records the coordinates of the current cell being used to attempt a transition */
+	/* Random number stream used to choose cells, restarted from the seed whenever tests begin */
+	SplittableRandom random;
+
+	/* Records the coordinates of the current cell undergoing a transition */
 	int x=0;
 	int y=0;
 
@@ -101,14 +91,6 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 	/* Records whether a pair of configurations has been successfully loaded - and hence testing is allowed */
 	int loaded=0;
 
-	/* Records the current number of failed transitions - used to determine whether exhausitve approach
-	 * is needed. This is reset to 0 as soon as a successful transition is yielded via an exhaustive approach
-	 * and normal randomised mode is resumed */
-	int stall=0;
-
-	/* Indicates the maximum number of failed randomised transition attempts before exhausitve mode is used */
-	int maxStalls= 100000;
-
 	/* GUI items - */
 
 	/* Allows you to select source and target configuration files */
@@ -125,7 +107,7 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 	JLabel tgt = new JLabel("N/A");
 
 	/* Lists the current state of the tests - either the number of successful tests,
-	 * whether the system is in exhaustive mode, or whether the STCA has deadlocked */
+	 * or whether the STCA has deadlocked */
 	JLabel result = new JLabel("N/A");
 
 	/* Closes the Path Verification window */
@@ -137,6 +119,10 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 
 	/* Decides whether the system performs a single test, or just attempts indefinitely */
 	JCheckBox repeat = new JCheckBox();
+
+	/* Number of independent tests to run in parallel over all processor cores (left empty
+	 * to run tests one at a time, as decided by repeat) */
+	JTextField trials = new JTextField(7);
 	@SuppressWarnings("rawtypes")
 
 	/* Allows the selection of the STCA rules used for testing */
@@ -164,6 +150,18 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 				}
 			}
 
+			/* If a number of parallel trials is given, run those instead and wait again */
+			long ensembleTrials=0;
+			try{
+				ensembleTrials=Long.parseLong(trials.getText().trim());
+			}
+			catch(NumberFormatException e){
+			}
+			if(ensembleTrials>0){
+				runEnsemble(ensembleTrials);
+				continue;
+			}
+
 			/* Store whether we wish to repeat the test over and over */
 			boolean loop=false;
 			if(repeat.isSelected()){
@@ -184,11 +182,7 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 					break;
 				}
 
-				/* Variables for deciding which cell to attempt a transition on */
-				x=0;
-				y=0;
-
-				/* Prepare's the difference matrix and difference counter, and sets
+				/* Prepare's the difference counter and frontier, and sets
 				 * the configuration of the STCA to the initial configuration */
 				prepare();
 
@@ -196,263 +190,39 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 				 * configuration, AND the system has not received the request to pause/stop */
 				while(differences>0 && !isPaused()){
 
-					/* If the system is not in exhaustive mode */
-					if(exhaust==0){
-
-						/* Decide the cell coordinates randomly */
-						float random1=GlobalAttributes.random.nextFloat();
-						float random2=GlobalAttributes.random.nextFloat();
-						float randomX=random1 * (float)(GlobalAttributes.xCells);
-						float randomY=random2 * (float)(GlobalAttributes.yCells);
-						x=(int)randomX;
-						y=(int)randomY;
+					/* Rebuild the frontier if the STCA has been changed since it was built */
+					if(frontier.automata!=GlobalAttributes.automata){
+						frontier.rebuild();
 					}
 
-					/* Else increment the cell column number, but if the cell
-					 * is the last in the column, then increment the row number
-					 * and select the cell from the left most column */
-					else{
-						x++;
-						if(x==GlobalAttributes.xCells){
-							x=0;
-							y++;
-						}
-					}
-
-					/* Assume that the cell is not updated until otherwise */
-					boolean updated=false;
-
-					/* Only execute transition if not a bordering cell */
-					if(x>0 && x<GlobalAttributes.xCells-1 && y>0 && y<GlobalAttributes.yCells-1){
-						updated=ApplyRule.executeTransition(x,y,grid);
-					}
-
-					/* Used for debugging */
-					if(output==1){
-						System.out.println("got through section 1");
-					}
-
-					/* If a cell update has occurred */
-					if(updated){
-
-						/* Used for debugging */
-						if(output==1){
-							System.out.println("a cell was updated - comparing");
-						}
-
-						/* If the cell is now in the same state as the final configuration */
-						if(target[x][y].topSubcellValue==grid[x][y].topSubcellValue &&
-								target[x][y].bottomSubcellValue==grid[x][y].bottomSubcellValue &&
-								target[x][y].leftSubcellValue==grid[x][y].leftSubcellValue &&
-								target[x][y].rightSubcellValue==grid[x][y].rightSubcellValue){
-
-							/* But was different before */
-							if(different[x][y]){
-
-								/* Modify the difference matrix and decrement the difference
-								 * counter */
-								different[x][y]=false;
-								differences--;
-
-								/* Used for debugging */
-								if(output==1){
-									System.out.println("cells are the same but were different before");}
-							}
-
-							/* Else if the cell is now different from the final configuration */
-						}else{
-
-							/* But was the same before */
-							if(!different[x][y]){
-
-								/* Modify the difference matrix and increment the difference
-								 * counter */
-								different[x][y]=true;
-								differences++;
-
-								/* Used for debugging */
-								if(output==1){
-									System.out.println("cells are now different but were the same before");}
-							}
-						}
-
-						/* Used for debugging */
-						if(output==1){
-							System.out.println("updating left neighbour");
-						}
-
-						/* If the current cell has a left neighbour */
-						if(x>0){
-
-							/* And the left neighbour cell is now the same as the final configuration */
-							if(target[x-1][y].rightSubcellValue==grid[x-1][y].rightSubcellValue &&
-									target[x-1][y].bottomSubcellValue==grid[x-1][y].bottomSubcellValue &&
-									target[x-1][y].leftSubcellValue==grid[x-1][y].leftSubcellValue &&
-									target[x-1][y].topSubcellValue==grid[x-1][y].topSubcellValue){
-
-								/* But was different before */
-								if(different[x-1][y]){
-
-									/* Modify the difference matrix and decrement the difference
-									 * counter */
-									different[x-1][y]=false;
-									differences--;
-
-								}
-
-								/* Else if the left neighbour cell is now different from the final configuration */
-							}else{
-
-								/* But was the same before */
-								if(!different[x-1][y]){
-
-									/* Modify the difference matrix and increment the difference
-									 * counter */
-									different[x-1][y]=true;
-									differences++;
-								}
-							}
-						}
-
-						/* If the current cell has a right neighbour */
-						if(x<GlobalAttributes.xCells-1){
-
-							/* And the right neighbour cell is now the same as the final configuration */
-							if(target[x+1][y].leftSubcellValue==grid[x+1][y].leftSubcellValue &&
-									target[x+1][y].bottomSubcellValue==grid[x+1][y].bottomSubcellValue &&
-									target[x+1][y].topSubcellValue==grid[x+1][y].topSubcellValue &&
-									target[x+1][y].rightSubcellValue==grid[x+1][y].rightSubcellValue){
-
-								/* But was different before */
-								if(different[x+1][y]){
-
-									/* Modify the difference matrix and decrement the difference
-									 * counter */
-									different[x+1][y]=false;
-									differences--;
-								}
-
-								/* Else if the right neighbour cell is now different from the final configuration */
-							}else{
-
-								/* But was the same before */
-								if(!different[x+1][y]){
-
-									/* Modify the difference matrix and increment the difference
-									 * counter */
-									different[x+1][y]=true;
-									differences++;
-								}
-							}
-						}
-
-						/* If the current cell has a top neighbour */
-						if(y>0){
-
-							/* And the top neighbour cell is now the same as the final configuration */
-							if(target[x][y-1].bottomSubcellValue==grid[x][y-1].bottomSubcellValue &&
-									target[x][y-1].topSubcellValue==grid[x][y-1].topSubcellValue &&
-									target[x][y-1].leftSubcellValue==grid[x][y-1].leftSubcellValue &&
-									target[x][y-1].rightSubcellValue==grid[x][y-1].rightSubcellValue){
-
-								/* But was different before */
-								if(different[x][y-1]){
-
-									/* Modify the difference matrix and decrement the difference
-									 * counter */
-									different[x][y-1]=false;
-									differences--;
-								}
-
-								/* Else if the top neighbour cell is now different from the final configuration */
-							}else{
-
-								/* But was the same before */
-								if(!different[x][y-1]){
-
-									/* Modify the difference matrix and increment the difference
-									 * counter */
-									different[x][y-1]=true;
-									differences++;
-								}
-							}
-						}
-
-						/* If the current cell has a bottom neighbour */
-						if(y<GlobalAttributes.yCells-1){
-
-							/* And the bottom neighbour cell is now the same as the final configuration */
-							if(target[x][y+1].topSubcellValue==grid[x][y+1].topSubcellValue &&
-									target[x][y+1].topSubcellValue==grid[x][y+1].topSubcellValue &&
-									target[x][y+1].leftSubcellValue==grid[x][y+1].leftSubcellValue &&
-									target[x][y+1].rightSubcellValue==grid[x][y+1].rightSubcellValue){
-
-								/* But was different before */
-								if(different[x][y+1]){
-
-									/* Modify the difference matrix and decrement the difference
-									 * counter */
-									different[x][y+1]=false;
-									differences--;
-								}
-
-								/* Else if the bottom neighbour cell is now different from the final configuration */
-							}else{
-
-								/* But was the same before */
-								if(!different[x][y+1]){
-
-									/* Modify the difference matrix and increment the difference
-									 * counter */
-									different[x][y+1]=true;
-									differences++;
-								}
-							}
-						}
-
-						/* A successful update means set the failed transition counter to 0 */
-						stall=0;
-
-						/* And if the system is in exhaustive mode then set it back to normal mode */
-						if(exhaust==1){
-							exhaust=0;
-							result.setText("Update occurred: returning to random selection");
-						}
+					/* If no rule can be applied to any cell then there is a definite
+					 * deadlock of the STCA and execution can stop */
+					if(frontier.isEmpty()){
+						result.setText("Deadlock");
+						pause();
+						break;
 					}
 
-					/* If an update has NOT occurred */
-					else{
-
-						/* And the system is not in exhaustive mode */
-						if(exhaust==0){
+					/* Decide the cell randomly out of those a rule can be applied to
+					 * (bordering cells are never among them) */
+					long cell=frontier.sample(random);
+					x=(int)(cell%grid.width);
+					y=(int)(cell/grid.width);
 
-							/* Increment the failed transition counter */
-							stall++;
+					/* Count how many of the cell and its four neighbours differ from the
+					 * final configuration before the update */
+					int before=differs(x,y)+differs(x-1,y)+differs(x+1,y)+differs(x,y-1)+differs(x,y+1);
+					ApplyRule.executeTransition(x,y,grid);
+					frontier.update(x,y);
 
-							/* If the failed transition threshold has been reached */
-							if(stall==maxStalls){
-
-								/* Set the system to exhaustive mode */
-								exhaust=1;
-								result.setText("No updates after 100000 transitions: attempting iterative approach");
-								x=0; y=0;
-							}
-						}
-
-						/* Else if the system is in exhaustive mode, and the bottom-right-most cell
-						 * has failed to update */
-						else if(x==GlobalAttributes.xCells-1 && y==GlobalAttributes.yCells-1){
-
-							/* Then there is a definite deadlock of the STCA and execution can stop */
-							result.setText("Deadlock");
-							pause();
-							x=0; y=0;
-						}
-					}
+					/* Adjust the difference counter by however many of the five cells have
+					 * become the same as, or different from, the final configuration */
+					differences+=differs(x,y)+differs(x-1,y)+differs(x+1,y)+differs(x,y-1)+differs(x,y+1)-before;
 
 					/* Used for debugging */
 					if(output==1){
-						System.out.println("loop finished");
+						System.out.println("a cell was updated - "+differences+" differences remain, "
+								+frontier.size+" cells enabled");
 					}
 				}
 
@@ -482,63 +252,61 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 
 
 
-	/* Restore source configuration and difference matrix from the fixed initial versions */
-	public void prepare(){
+	/* Runs the given number of independent tests across all processor cores, each with its own
+	 * random number stream split from the ensemble's stream, showing the results so far
+	 * until they have all finished or the user clicks End */
+	void runEnsemble(long count){
+		PathEnsemble ensemble=new PathEnsemble(source,target,count,RandomStreams.stream(RandomStreams.ENSEMBLE));
+		ensemble.start(Runtime.getRuntime().availableProcessors());
+		try{
+			while(!ensemble.awaitFinish(200)){
+				if(isPaused()){
+					ensemble.stop();
+				}
+				showEnsemble(ensemble);
+			}
+		}
+		catch(InterruptedException e){
+			ensemble.stop();
+		}
+		showEnsemble(ensemble);
+		pause();
+	}
 
-		/* For every cell in the cell space */
-		for (int i=0;i<GlobalAttributes.xCells;i++){
-			for(int j=0;j<GlobalAttributes.yCells;j++){
+	/* Displays the results of an ensemble of tests */
+	void showEnsemble(PathEnsemble ensemble){
+		String text="<html>";
+		for(String line : ensemble.summary()){
+			text+=line+"<br>";
+		}
+		result.setText(text+"</html>");
+	}
 
-				/* Set the cell state to the starting configuration */
-				grid[i][j].topSubcellValue=source[i][j].topSubcellValue;
-				grid[i][j].bottomSubcellValue=source[i][j].bottomSubcellValue;
-				grid[i][j].leftSubcellValue=source[i][j].leftSubcellValue;
-				grid[i][j].rightSubcellValue=source[i][j].rightSubcellValue;
+	/* Restore source configuration and difference counter from the fixed initial versions */
+	public void prepare(){
 
-				/* Set the "current" difference matrix value to
-				 * the value in the fixed initial matrix */
-				different[i][j]=fixeddifferent[i][j];				
-			}
-		}
+		/* Set the cell states to the starting configuration, and find the cells
+		 * a rule can be applied to */
+		grid.copyFrom(source);
+		frontier.rebuild();
 
 		/* Reset the differences counter to the fixed version */
 		differences=fixeddifferences;
 	}
 
 	/* Calculates the number of differences between the starting configuration
-	 * and the target configuration - it also generates the fixed initial 
-	 * difference matrix */
+	 * and the target configuration */
 	public void differences(){
+		fixeddifferences=source.countDifferences(target);
+	}
 
-		/* Set the value of the initial differences to zero (it is calculated through
-		 * incrementing the variable) */
-		fixeddifferences=0;
-
-		/* For every cell in the cell space */
-		for (int i=0;i<GlobalAttributes.xCells;i++){
-			for(int j=0;j<GlobalAttributes.yCells;j++){
-
-				/* If the value in the initial configuration differs from the value
-				 * in the target configuration */
-				if(source[i][j].topSubcellValue != target[i][j].topSubcellValue ||
-						source[i][j].bottomSubcellValue != target[i][j].bottomSubcellValue ||
-						source[i][j].leftSubcellValue != target[i][j].leftSubcellValue ||
-						source[i][j].rightSubcellValue != target[i][j].rightSubcellValue){
-
-					/* Set the value in the fixed initial difference matrix
-					 * to true and increment the fixed initial differences counter */
-					fixeddifferent[i][j]=true;
-					fixeddifferences++;
-				}
-
-				/* Else if the value does not differ, set the value in the
-				 * fixed initial differences matrix to false and do not increment
-				 * the fixed initial differences counter */
-				else{
-					fixeddifferent[i][j]=false;
-				}
-			}
+	/* Returns 1 if the cell at the given coordinates currently differs from the
+	 * target configuration, 0 otherwise */
+	int differs(int x, int y){
+		if(grid.get(x,y)!=target.get(x,y)){
+			return 1;
 		}
+		return 0;
 	}
 
 	/* Constructor class which sets up the GUI for this window and sets the
@@ -585,6 +353,9 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 		pathPanel2.add(Box.createRigidArea(new Dimension(500,1)));
 		pathPanel2.add(new JLabel("Repeat"));
 		pathPanel2.add(repeat);pathPanel.add(Box.createRigidArea(new Dimension(500,1)));
+		pathPanel2.add(new JLabel("Parallel trials"));
+		pathPanel2.add(trials);
+		pathPanel2.add(Box.createRigidArea(new Dimension(500,1)));
 		pathPanel2.add(startcheck);
 		pathPanel2.add(stopcheck);
 		pathPanel2.add(Box.createRigidArea(new Dimension(500,1)));
@@ -600,10 +371,10 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 		pathPanel2.add(close);
 
 		/* Sets the sizes of various components */
-		pathPanel.setPreferredSize(new Dimension(280,270));
-		pathPanel2.setPreferredSize(new Dimension(210,270));
+		pathPanel.setPreferredSize(new Dimension(280,330));
+		pathPanel2.setPreferredSize(new Dimension(210,330));
 		automata.setPreferredSize(new Dimension(280,20));
-		result.setPreferredSize(new Dimension(150,50));
+		result.setPreferredSize(new Dimension(200,90));
 		path1.setPreferredSize(new Dimension(200,20));
 		path2.setPreferredSize(new Dimension(200,20));
 
@@ -620,23 +391,6 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 		}
 		automata.setSelectedIndex(GlobalAttributes.automata);
 
-		/* Initialise the 2D cell spaces in this class by just initialising
-		 * each cell individually, and by setting each cell's internal
-		 * coordinates based on its position in the relevant array */
-		for (int i=0; i<GlobalAttributes.xCells;i++){
-			for (int j=0;j<GlobalAttributes.yCells;j++){
-				grid[i][j]=new Cell();
-				grid[i][j].xPosition=i;
-				grid[i][j].yPosition=j;
-				source[i][j]=new Cell();
-				source[i][j].xPosition=i;
-				source[i][j].yPosition=j;
-				target[i][j]=new Cell();
-				target[i][j].xPosition=i;
-				target[i][j].yPosition=j;
-			}
-		}
-
 		/* Load the list of configuration files into the two relevant combo boxes */
 		loadFiles();
 
@@ -678,6 +432,11 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 				automata.setEnabled(false);
 				load.setEnabled(false);
 				repeat.setEnabled(false);
+				trials.setEnabled(false);
+
+				/* Restart the random number stream, so tests are reproducible
+				 * from the seed set in the main window */
+				random=RandomStreams.stream(RandomStreams.VERIFIER);
 
 				/* Wake up the execution updater thread */
 				unPause();
@@ -710,6 +469,7 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 			automata.setEnabled(true);
 			load.setEnabled(true);
 			repeat.setEnabled(true);
+			trials.setEnabled(true);
 		}
 
 		/* If the user clicks the Close button */
@@ -727,147 +487,48 @@ public class PathVerifierFrame extends JFrame implements Runnable, ActionListene
 			if(path1.getSelectedIndex()!=-1 && path2.getSelectedIndex()!=-1){
 
 				/* Load the two configurations into program memory */
-				loadEnds(path1.getSelectedItem().toString()+".con",
-						path2.getSelectedItem().toString()+".con");
-				loaded=1;
-				result.setText("N/A");
+				if(loadEnds(path1.getSelectedItem().toString()+".con",
+						path2.getSelectedItem().toString()+".con")){
+					loaded=1;
+					result.setText("N/A");
+				}
+				else{
+					loaded=0;
+					result.setText("Could not load configurations of the same size");
+				}
 			}
 		}
 	}
 
 	/* Loads the two configurations name1, name2 into program memory as
-	 * the source and target configurations respectively */
-	public void loadEnds(String name1,String name2){
+	 * the source and target configurations respectively, and returns whether
+	 * both could be loaded (they must also be the same size) */
+	public boolean loadEnds(String name1,String name2){
 
-		/* Load the source configuration */
-
-		/* Records the coordinates of the current cell state being read */
-		int row=0;
-		int column=0;
+		/* Load the source configuration, then the target configuration (skipping
+		 * their annotations), displaying each one's name once it is loaded */
 		try {
-
-			/* Load the file name1 if it actually exists */
-			File file = new File(name1);
-			if (file.exists()){
-
-				/* Create java reader objects */
-				FileReader fileReader = new FileReader(file);
-				BufferedReader reader=new BufferedReader(fileReader);
-
-				/* Read the number of annotations stored and then skip that many lines */
-				int noOflabels = Integer.parseInt(reader.readLine());
-				for (int i=0;i<noOflabels;i++){
-					reader.readLine();
-					reader.readLine();
-					reader.readLine();
-				}
-
-				/* While there is still some of the file left to read */
-				while(reader.ready()){
-
-					/* Read the next line from the file */
-					String temp=reader.readLine();
-
-					/* If the current row contains only a newRow command */
-					if(temp.equals("newRow")){
-
-						/* Increment the row */
-						row++;
-
-						/* Read and set the cell's state for the leftmost cell of this row */
-						source[row][0].topSubcellValue=Integer.parseInt(reader.readLine());
-						source[row][0].bottomSubcellValue=Integer.parseInt(reader.readLine());
-						source[row][0].leftSubcellValue=Integer.parseInt(reader.readLine());
-						source[row][0].rightSubcellValue=Integer.parseInt(reader.readLine());
-						column=1;
-					}
-
-					/* Else just read the cell's state for the next cell in this row */
-					else{
-						source[row][column].topSubcellValue=Integer.parseInt(temp);
-						source[row][column].bottomSubcellValue=Integer.parseInt(reader.readLine());
-						source[row][column].leftSubcellValue=Integer.parseInt(reader.readLine());
-						source[row][column].rightSubcellValue=Integer.parseInt(reader.readLine());
-						column++;
-					}
-				}
-
-				/* Close the java reader objects */
-				reader.close();
-				fileReader.close();
-			}
-
-			/* Display the configuration's name in the source configuration label */
+			source=ConfigurationFile.load(name1,null,null);
 			src.setText(name1);
-		} catch (Exception e) {
-		}		
-
-		/* Load the target configuration */
-
-		/* Records the coordinates of the current cell state being read */
-		row=0;
-		column=0;
-		try {
-
-			/* Load the file name2 if it actually exists */
-			File file = new File(name2);
-			if (file.exists()){
-
-				/* Create java reader objects */
-				FileReader fileReader = new FileReader(file);
-				BufferedReader reader=new BufferedReader(fileReader);
-
-				/* Read the number of annotations stored and then skip that many lines */
-				int noOflabels = Integer.parseInt(reader.readLine());
-				for (int i=0;i<noOflabels;i++){
-					reader.readLine();
-					reader.readLine();
-					reader.readLine();
-				}
-
-				/* While there is still some of the file left to read */
-				while(reader.ready()){
-
-					/* Read the next line from the file */
-					String temp=reader.readLine();
-
-					/* If the current row contains only a newRow command */
-					if(temp.equals("newRow")){
-
-						/* Increment the row */
-						row++;
-
-						/* Read and set the cell's state for the leftmost cell of this row */
-						target[row][0].topSubcellValue=Integer.parseInt(reader.readLine());
-						target[row][0].bottomSubcellValue=Integer.parseInt(reader.readLine());
-						target[row][0].leftSubcellValue=Integer.parseInt(reader.readLine());
-						target[row][0].rightSubcellValue=Integer.parseInt(reader.readLine());
-						column=1;
-					}
-
-					/* Else just read the cell's state for the next cell in this row */
-					else{
-						target[row][column].topSubcellValue=Integer.parseInt(temp);
-						target[row][column].bottomSubcellValue=Integer.parseInt(reader.readLine());
-						target[row][column].leftSubcellValue=Integer.parseInt(reader.readLine());
-						target[row][column].rightSubcellValue=Integer.parseInt(reader.readLine());
-						column++;
-					}
-				}
-
-				/* Close the java reader objects */
-				reader.close();
-				fileReader.close();
-			}
-
-			/* Display the configuration's name in the target configuration label */
+			target=ConfigurationFile.load(name2,null,null);
 			tgt.setText(name2);
 		} catch (Exception e) {
+			return false;
 		}
 
-		/* Calculate the difference matrix and differences counter between the source
+		/* The configurations can only be compared if they are the same size */
+		if(source.width!=target.width || source.height!=target.height){
+			return false;
+		}
+
+		/* Create the cell space the tests are carried out in, at the same size */
+		grid=new CellGrid(source.width,source.height);
+		frontier=new Frontier(grid);
+
+		/* Calculate the differences counter between the source
 		 * and target configurations */
 		differences();
+		return true;
 	}
 
 	/* Loads the list of configuration file names into the two relevant combo boxes 
@@ -0,0 +1,35 @@
+import java.util.SplittableRandom;
+
+/* Hands out independent random number streams, all derived from one master seed (the one in the
+ * main window's seed field), so that results are reproducible given that seed. Each engine which
+ * simulates takes its own stream rather than sharing a single generator, so parallel workers never
+ * contend for one; a stream is identified by a fixed number, and the same seed and number always
+ * give the same stream, whatever order streams are asked for in. A stream's split() can be used to
+ * give further streams to each trial or worker of an engine (in a fixed order, to stay reproducible) */
+public class RandomStreams {
+
+	/* Numbers identifying the stream of each engine */
+	static final int SIMULATION=0;
+	static final int VERIFIER=1;
+	static final int ENSEMBLE=2;
+
+	/* Master seed which every stream is derived from */
+	static volatile long seed=GlobalAttributes.initialseed;
+
+	/* Sets the master seed - streams handed out afterwards are derived from it */
+	static void setSeed(long newSeed){
+		seed=newSeed;
+	}
+
+	/* Returns a new stream for the given engine, derived from the master seed */
+	static SplittableRandom stream(int number){
+		return new SplittableRandom(mix(seed^mix(number+1)));
+	}
+
+	/* SplitMix64 mixing function, so that nearby seeds and numbers give unrelated streams */
+	static long mix(long z){
+		z=(z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z=(z^(z>>>27))*0x94D049BB133111EBL;
+		return z^(z>>>31);
+	}
+}
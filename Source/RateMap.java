@@ -0,0 +1,173 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/* Firing rates of the cells of a cell space, for the timed execution mode (see TimedScheduler).
+ * A cell with rate r which becomes enabled undergoes its transition after a random delay, by default
+ * exponentially distributed with mean 1/r; a rate of 0 means the cell never undergoes transitions.
+ * Rates are read from a text file with the same name as the configuration file but ending in .rates
+ * instead of .con, holding one entry per line:
+ *
+ *   default <rate>                          rate of every cell not given below (1 if not given)
+ *   <x> <y> <rate>                          rate of one cell
+ *   <x1> <y1> <x2> <y2> <rate>              rate of every cell of a rectangle (corners included)
+ *   delay exponential | fixed | uniform     delays exponential, always 1/r, or uniform from 0 to 2/r
+ *
+ * Rates must be finite and at least 0. Blank lines and lines starting with # are ignored. A later
+ * rate of a cell overrides an earlier one, but the default must come before any rates of cells */
+public class RateMap {
+
+	/* Extension of rate files */
+	static final String EXTENSION=".rates";
+
+	/* Ways of drawing delays */
+	static final int EXPONENTIAL=0;
+	static final int FIXED=1;
+	static final int UNIFORM=2;
+
+	/* Size of the cell space the rates are for */
+	final int width;
+	final int height;
+
+	/* Rate of every cell not given otherwise */
+	double defaultRate=1;
+
+	/* Rate of each cell, indexed by y*width+x - null until a rate is given for a single cell (and
+	 * so always null if there are more cells than an array can hold) */
+	float[] rates;
+
+	/* How delays are drawn */
+	int delay=EXPONENTIAL;
+
+	/* Constructor - every cell of a cell space of the given size has rate 1 */
+	public RateMap(int width, int height){
+		this.width=width;
+		this.height=height;
+	}
+
+	/* Returns the rate of the cell y*width+x */
+	double rate(long cell){
+		if(rates==null){
+			return defaultRate;
+		}
+		return rates[(int)cell];
+	}
+
+	/* Sets the rate of every cell of the rectangle from x1,y1 to x2,y2 (clipped to the cell space).
+	 * Only the default rate can be given to a cell space of more cells than an array can hold */
+	void setRate(int x1, int y1, int x2, int y2, double rate){
+		if(rates==null){
+			if((long)width*height>Integer.MAX_VALUE){
+				throw new IllegalArgumentException("rates of single cells cannot be given for a cell space of "
+						+((long)width*height)+" cells, only a default rate");
+			}
+			rates=new float[width*height];
+			Arrays.fill(rates,(float)defaultRate);
+		}
+		for(int y=Math.max(Math.min(y1,y2),0);y<=Math.min(Math.max(y1,y2),height-1);y++){
+			for(int x=Math.max(Math.min(x1,x2),0);x<=Math.min(Math.max(x1,x2),width-1);x++){
+				rates[y*width+x]=(float)rate;
+			}
+		}
+	}
+
+	/* Returns a random delay before the cell y*width+x undergoes a transition, once it is enabled
+	 * (infinite if its rate is 0) */
+	double delay(long cell, SplittableRandom random){
+		double rate=rate(cell);
+		if(rate<=0){
+			return Double.POSITIVE_INFINITY;
+		}
+		if(delay==FIXED){
+			return 1/rate;
+		}
+		if(delay==UNIFORM){
+			return random.nextDouble()*2/rate;
+		}
+		return -Math.log(1-random.nextDouble())/rate;
+	}
+
+	/* Name of the rate file which goes with the given configuration file */
+	static String fileFor(String configuration){
+		if(configuration.endsWith(".con")){
+			configuration=configuration.substring(0,configuration.length()-4);
+		}
+		return configuration+EXTENSION;
+	}
+
+	/* Reads a rate, which must be finite (as a float, as rates of cells are kept) and at least 0 */
+	static double parseRate(String word){
+		double rate=Double.parseDouble(word);
+		if(!(rate>=0 && rate<=Float.MAX_VALUE)){
+			throw new IllegalArgumentException("rate "+word+" is not a finite number of at least 0");
+		}
+		return rate;
+	}
+
+	/* Loads the rates which go with the given configuration file, for a cell space of the given
+	 * size - every cell has rate 1 if there is no rate file */
+	static RateMap load(String configuration, int width, int height) throws IOException{
+		RateMap map=new RateMap(width,height);
+		File file=new File(fileFor(configuration));
+		if(!file.exists()){
+			return map;
+		}
+		BufferedReader reader=new BufferedReader(new FileReader(file));
+		try{
+			String line;
+			int number=0;
+			while((line=reader.readLine())!=null){
+				number++;
+				line=line.trim();
+				if(line.length()==0 || line.startsWith("#")){
+					continue;
+				}
+				String[] words=line.split("\\s+");
+				try{
+					if(words[0].equals("default") && words.length==2){
+						map.defaultRate=parseRate(words[1]);
+						if(map.rates!=null){
+							throw new IllegalArgumentException("default must come before the rates of cells");
+						}
+					}
+					else if(words[0].equals("delay") && words.length==2){
+						if(words[1].equals("exponential")){
+							map.delay=EXPONENTIAL;
+						}
+						else if(words[1].equals("fixed")){
+							map.delay=FIXED;
+						}
+						else if(words[1].equals("uniform")){
+							map.delay=UNIFORM;
+						}
+						else{
+							throw new IllegalArgumentException("unknown delay "+words[1]);
+						}
+					}
+					else if(words.length==3){
+						int x=Integer.parseInt(words[0]);
+						int y=Integer.parseInt(words[1]);
+						map.setRate(x,y,x,y,parseRate(words[2]));
+					}
+					else if(words.length==5){
+						map.setRate(Integer.parseInt(words[0]),Integer.parseInt(words[1]),
+								Integer.parseInt(words[2]),Integer.parseInt(words[3]),parseRate(words[4]));
+					}
+					else{
+						throw new IllegalArgumentException("unrecognised entry");
+					}
+				}
+				catch(IllegalArgumentException e){
+					throw new IOException(file.getName()+" line "+number+": "+e.getMessage());
+				}
+			}
+			return map;
+		}
+		finally{
+			reader.close();
+		}
+	}
+}
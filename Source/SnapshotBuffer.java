@@ -0,0 +1,158 @@
+/* Copies of a cell space handed from the threads changing it to the thread painting it, so that
+ * painting never has to hold the cell space's monitor (and the simulation never waits for a paint).
+ * Three copies are kept (triple buffering): one being written, one being painted, and the latest
+ * finished one in between. The writer swaps its finished copy in as the latest, and the painter
+ * swaps its old copy for the latest whenever a newer one has been published, so neither ever
+ * touches a copy the other is using - they only share a short lock around the swap.
+ *
+ * Each copy also carries the cells which have changed since the copy before it (the dirty cells),
+ * so the painter can redraw just those. If the painter misses a copy, its dirty cells are carried
+ * over to the next one.
+ *
+ * The copy being written is usually only a frame or two behind, so rather than copying the whole
+ * cell space, publishing copies just the dirty cells of the frames it has missed (and their
+ * neighbours, whose facing subcells a transition also changes), kept for the last HISTORY frames.
+ * The whole cell space is copied only if one of those frames was full, or the copy is older */
+public class SnapshotBuffer {
+
+	/* Most dirty cells recorded in one copy - beyond this the whole cell space is redrawn */
+	static final int MAX_DIRTY=4096;
+
+	/* Number of recent frames whose dirty cells are kept to bring a copy up to date */
+	static final int HISTORY=4;
+
+	/* A copy of the cell space, and the cells which have changed since the copy before it */
+	static class Snapshot {
+		CellGrid grid;
+		long[] dirty=new long[64];
+		int dirtyCount=0;
+
+		/* True if every cell is to be redrawn (instead of just the dirty cells) */
+		boolean full=true;
+
+		/* Whether it has been published since the painter last took one */
+		boolean fresh=false;
+
+		/* Number of the frame the grid holds (0 if none) */
+		long frame=0;
+
+		/* Adds dirty cells (as y*width+x), or marks the whole copy as changed if there are too many */
+		void addDirty(long[] cells, int count){
+			if(full || count==0){
+				return;
+			}
+			if(dirtyCount+count>MAX_DIRTY){
+				full=true;
+				dirtyCount=0;
+				return;
+			}
+			if(dirtyCount+count>dirty.length){
+				long[] larger=new long[Math.max(dirty.length*2,dirtyCount+count)];
+				System.arraycopy(dirty,0,larger,0,dirtyCount);
+				dirty=larger;
+			}
+			System.arraycopy(cells,0,dirty,dirtyCount,count);
+			dirtyCount+=count;
+		}
+
+		/* Marks the copy as drawn */
+		void clearDirty(){
+			dirtyCount=0;
+			full=false;
+		}
+	}
+
+	/* Copy being written (only touched while holding this object's monitor) */
+	private Snapshot back=new Snapshot();
+
+	/* Latest finished copy (only touched while holding the exchange lock) */
+	private Snapshot middle=new Snapshot();
+
+	/* Copy being painted (only touched by the painter) */
+	private Snapshot front=new Snapshot();
+
+	/* Lock held while swapping copies */
+	private final Object exchange=new Object();
+
+	/* Number of frames published, the grid the last was copied from, and the dirty cells of the
+	 * last HISTORY of them (frame f in slot f%HISTORY, with no cells if the frame was full) - only
+	 * touched while holding this object's monitor */
+	private long frames=0;
+	private CellGrid source;
+	private final long[][] history=new long[HISTORY][MAX_DIRTY];
+	private final int[] historyCount=new int[HISTORY];
+	private final boolean[] historyFull=new boolean[HISTORY];
+
+	/* Publishes a copy of the given grid as the latest, in which the given cells have changed (or
+	 * every cell, if full is true) - the caller must hold the grid's monitor, or otherwise stop it
+	 * changing */
+	synchronized void publish(CellGrid grid, long[] cells, int count, boolean full){
+		frames++;
+		int slot=(int)(frames%HISTORY);
+		historyFull[slot]=full || count>MAX_DIRTY || grid!=source;
+		source=grid;
+		historyCount[slot]=historyFull[slot] ? 0 : count;
+		if(count>0 && !historyFull[slot]){
+			System.arraycopy(cells,0,history[slot],0,count);
+		}
+
+		/* Bring the copy up to date with the cells changed in the frames since the one it holds */
+		if(back.grid==null || back.grid.width!=grid.width || back.grid.height!=grid.height){
+			back.grid=new CellGrid(grid.width,grid.height);
+			back.frame=0;
+		}
+		boolean copyAll=back.frame==0 || frames-back.frame>HISTORY;
+		for(long frame=back.frame+1;!copyAll && frame<=frames;frame++){
+			copyAll=historyFull[(int)(frame%HISTORY)];
+		}
+		if(copyAll){
+			back.grid.copyFrom(grid);
+		}
+		else{
+			for(long frame=back.frame+1;frame<=frames;frame++){
+				int past=(int)(frame%HISTORY);
+				for(int k=0;k<historyCount[past];k++){
+					long cell=history[past][k];
+					back.grid.copyAround(grid,(int)(cell%grid.width),(int)(cell/grid.width));
+				}
+			}
+			back.grid.hash=grid.hash;
+		}
+		back.frame=frames;
+		back.clearDirty();
+		back.full=full;
+		back.addDirty(cells,count);
+		synchronized(exchange){
+
+			/* Keep the changes of a copy the painter never took */
+			if(middle.fresh){
+				back.full|=middle.full;
+				back.addDirty(middle.dirty,middle.dirtyCount);
+			}
+			back.fresh=true;
+			Snapshot latest=back;
+			back=middle;
+			middle=latest;
+		}
+	}
+
+	/* Publishes a copy of the given grid in which every cell is to be redrawn */
+	void publish(CellGrid grid){
+		publish(grid,null,0,true);
+	}
+
+	/* Returns the latest published copy (its grid is null if none has been), which stays unchanged
+	 * until the next call, with its dirty cells if it has not been returned before - only to be
+	 * called by the painting thread, which should clear the dirty cells once it has drawn them */
+	Snapshot latest(){
+		synchronized(exchange){
+			if(middle.fresh){
+				front.fresh=false;
+				Snapshot latest=middle;
+				middle=front;
+				front=latest;
+			}
+		}
+		return front;
+	}
+}
@@ -0,0 +1,412 @@
+import java.util.Arrays;
+import java.util.Vector;
+
+/* Explores every order in which transitions can take place (every asynchronous interleaving)
+ * starting from a source configuration, to prove whether the STCA always reaches a target
+ * configuration - whereas the path verifier only tries random orders. A path stops once it reaches
+ * the target. The check fails if some path instead deadlocks in another configuration, or goes
+ * round a cycle of configurations which never includes the target, in which case the transitions
+ * leading there are reported as a counterexample.
+ *
+ * The search is depth-first, with its stack held in primitive arrays. Each configuration found is
+ * stored packed (4 bits per cell, see CellGrid.pack) one after another in a single long[] arena, and
+ * found again through an open-addressing table of arena indices, so millions of configurations fit
+ * in memory. Configurations are hashed by the grid's Zobrist hash, which each transition updates in
+ * constant time, and a hash is compared before the configuration itself.
+ *
+ * With reduce set, only the enabled cells of a stubborn set (see StubbornSet) are tried in each
+ * configuration, which avoids exploring every order of transitions which are independent of each
+ * other. This still finds every reachable deadlock, but not every configuration, so paths do not
+ * stop at the target - instead every deadlock must be the target, and the target must therefore be
+ * a configuration where nothing can happen. Any cycle found is genuine, but the unreduced search is
+ * needed to be sure there is none. Can be run without the GUI:
+ *
+ *   java StateExplorer [-reduce] <source.con> <target.con> <automaton> [max configurations] [counterexample.con]
+ *
+ * where the counterexample file, if given, receives the deadlocked configuration or the first
+ * configuration of the cycle */
+public class StateExplorer {
+
+	/* Possible outcomes of the exploration */
+	static final int VERIFIED=0;
+	static final int DEADLOCK=1;
+	static final int CYCLE=2;
+	static final int LIMIT=3;
+
+	/* Status of an explored configuration - on the search stack, or completely explored */
+	static final byte ON_STACK=1;
+	static final byte DONE=2;
+
+	/* Default maximum number of configurations to store before giving up */
+	static final int MAX_STATES=10000000;
+
+	/* Grid used to work on one configuration at a time */
+	final CellGrid grid;
+
+	/* Target configuration, packed, and its hash */
+	final long[] targetPacked;
+	final long targetHash;
+
+	/* Number of long words in a packed configuration */
+	final int stateWords;
+
+	/* Maximum number of configurations to store before giving up */
+	int maxStates=MAX_STATES;
+
+	/* Whether to use partial-order reduction, and the stubborn sets it uses */
+	boolean reduce=false;
+	final StubbornSet stubborn;
+
+	/* The arena of packed configurations, their hashes and their status */
+	long[] states;
+	long[] hashes;
+	byte[] status;
+	int count=0;
+
+	/* Open-addressing table of configurations - each slot holds an arena index plus one (0 if empty) */
+	int[] table;
+	int mask;
+
+	/* The search stack. For each depth: the configuration, the position of its list of enabled
+	 * cells in the cells array (the list ends where the next depth's begins), how many of
+	 * those cells have been tried, and how many of them are to be tried (those of the stubborn
+	 * set, which come first, when reducing) */
+	int[] stackState;
+	int[] stackCells;
+	int[] stackNext;
+	int[] stackLimit;
+	int depth=0;
+	long[] cells;
+	int cellsSize=0;
+
+	/* Work space for packing a configuration before looking it up */
+	long[] scratch;
+
+	/* Result of the exploration: the outcome, the cells (as y*width+x) at which transitions were
+	 * applied from the source to reach the deadlock or cycle, the position in that trace at which
+	 * the cycle begins, and the arena index of the last configuration reached */
+	int outcome;
+	long[] trace;
+	int cycleStart=-1;
+	int last=-1;
+
+	/* Constructor - the source and target configurations must be the same size */
+	public StateExplorer(CellGrid source, CellGrid target){
+		grid=new CellGrid(source.width,source.height);
+		grid.copyFrom(source);
+		stateWords=grid.packedLength();
+		targetPacked=new long[stateWords];
+		target.pack(targetPacked,0);
+		targetHash=target.hash;
+		scratch=new long[stateWords];
+		states=new long[stateWords*1024];
+		hashes=new long[1024];
+		status=new byte[1024];
+		table=new int[2048];
+		mask=table.length-1;
+		stackState=new int[64];
+		stackCells=new int[64];
+		stackNext=new int[64];
+		stackLimit=new int[64];
+		cells=new long[1024];
+		stubborn=new StubbornSet(grid);
+	}
+
+	/* Explores every configuration reachable from the source, for the current STCA, and
+	 * returns the outcome */
+	int explore(){
+
+		/* Store the source configuration, which may already be the target */
+		grid.pack(scratch,0);
+		int source=add(scratch,grid.hash);
+		if(!reduce && isTarget(source)){
+			return finish(VERIFIED,source);
+		}
+
+		/* Find the cells enabled in the source configuration and start the search there */
+		for(int y=1;y<grid.height-1;y++){
+			for(int x=1;x<grid.width-1;x++){
+				if(ApplyRule.isEnabled(x,y,grid)){
+					addCell((long)y*grid.width+x);
+				}
+			}
+		}
+		if(cellsSize==0){
+			return finish(isTarget(source) ? VERIFIED : DEADLOCK,source);
+		}
+		push(source,0);
+
+		while(depth>0){
+			int d=depth-1;
+			int from=stackCells[d];
+			int to=cellsSize;
+
+			/* Once every enabled cell of the configuration on top of the stack has been tried,
+			 * it is completely explored */
+			if(stackNext[d]==stackLimit[d]){
+				status[stackState[d]]=DONE;
+				depth--;
+				cellsSize=from;
+				continue;
+			}
+
+			/* Apply a transition at the next enabled cell not yet tried */
+			long cell=cells[from+stackNext[d]++];
+			int x=(int)(cell%grid.width);
+			int y=(int)(cell/grid.width);
+			grid.unpack(states,stackState[d]*stateWords,hashes[stackState[d]]);
+			ApplyRule.executeTransition(x,y,grid);
+			grid.pack(scratch,0);
+			long hash=grid.hash;
+			int next=find(scratch,hash);
+
+			/* Reaching a configuration which is still on the stack means there is a cycle */
+			if(next>=0){
+				if(status[next]==ON_STACK){
+					for(int i=0;i<depth;i++){
+						if(stackState[i]==next){
+							cycleStart=i;
+						}
+					}
+					return finish(CYCLE,next);
+				}
+				continue;
+			}
+
+			/* Otherwise it is a new configuration, unless there is no room left */
+			if(count==maxStates || (long)(count+1)*stateWords>Integer.MAX_VALUE-8){
+				return finish(LIMIT,-1);
+			}
+			next=add(scratch,hash);
+
+			/* Paths stop at the target (unless reducing, see above) */
+			if(!reduce && isTarget(next)){
+				status[next]=DONE;
+				continue;
+			}
+
+			/* Its enabled cells are those of the previous configuration, except that the cell
+			 * which underwent the transition and its four neighbours must be checked again */
+			int start=cellsSize;
+			for(int i=from;i<to;i++){
+				long other=cells[i];
+				int dx=(int)(other%grid.width)-x;
+				int dy=(int)(other/grid.width)-y;
+				if(Math.abs(dx)+Math.abs(dy)>1){
+					addCell(other);
+				}
+			}
+			checkCell(x,y);
+			checkCell(x,y-1);
+			checkCell(x,y+1);
+			checkCell(x-1,y);
+			checkCell(x+1,y);
+
+			/* A configuration other than the target where nothing can happen is a deadlock */
+			if(cellsSize==start){
+				if(reduce && isTarget(next)){
+					status[next]=DONE;
+					continue;
+				}
+				push(next,start);
+				return finish(DEADLOCK,next);
+			}
+			push(next,start);
+		}
+		return finish(VERIFIED,-1);
+	}
+
+	/* Records the outcome, and the trace of transitions on the stack which led to it */
+	private int finish(int result, int state){
+		outcome=result;
+		last=state;
+		int steps=Math.max(0,depth-(result==DEADLOCK ? 1 : 0));
+		if(result==LIMIT || result==VERIFIED){
+			steps=0;
+		}
+		trace=new long[steps];
+		for(int i=0;i<steps;i++){
+			trace[i]=cells[stackCells[i]+stackNext[i]-1];
+		}
+		return result;
+	}
+
+	/* Adds the cell x,y to the current list of enabled cells if it is an interior cell which is enabled */
+	private void checkCell(int x, int y){
+		if(x>0 && x<grid.width-1 && y>0 && y<grid.height-1 && ApplyRule.isEnabled(x,y,grid)){
+			addCell((long)y*grid.width+x);
+		}
+	}
+
+	/* Appends a cell to the cells array */
+	private void addCell(long cell){
+		if(cellsSize==cells.length){
+			cells=Arrays.copyOf(cells,cells.length*2);
+		}
+		cells[cellsSize++]=cell;
+	}
+
+	/* Pushes a configuration, which must be the one in the grid and whose list of enabled cells
+	 * starts at the given position, onto the stack */
+	private void push(int state, int cellStart){
+		if(depth==stackState.length){
+			stackState=Arrays.copyOf(stackState,depth*2);
+			stackCells=Arrays.copyOf(stackCells,depth*2);
+			stackNext=Arrays.copyOf(stackNext,depth*2);
+			stackLimit=Arrays.copyOf(stackLimit,depth*2);
+		}
+		stackState[depth]=state;
+		stackCells[depth]=cellStart;
+		stackNext[depth]=0;
+		stackLimit[depth]=cellsSize-cellStart;
+		if(reduce && cellsSize>cellStart){
+			stackLimit[depth]=stubborn.choose(cells,cellStart,cellsSize);
+		}
+		status[state]=ON_STACK;
+		depth++;
+	}
+
+	/* Returns whether the stored configuration is the target */
+	private boolean isTarget(int state){
+		if(hashes[state]!=targetHash){
+			return false;
+		}
+		int offset=state*stateWords;
+		for(int i=0;i<stateWords;i++){
+			if(states[offset+i]!=targetPacked[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Returns the arena index of the packed configuration, or -1 if it has not been stored */
+	private int find(long[] packed, long hash){
+		for(int i=(int)(hash>>>32)&mask;table[i]!=0;i=(i+1)&mask){
+			int state=table[i]-1;
+			if(hashes[state]==hash && equal(state,packed)){
+				return state;
+			}
+		}
+		return -1;
+	}
+
+	/* Returns whether the stored configuration equals the packed one */
+	private boolean equal(int state, long[] packed){
+		int offset=state*stateWords;
+		for(int i=0;i<stateWords;i++){
+			if(states[offset+i]!=packed[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Stores a packed configuration which has not been stored before, and returns its arena index */
+	private int add(long[] packed, long hash){
+		if(count==hashes.length){
+			int capacity=(int)Math.min((long)count*2,Integer.MAX_VALUE/stateWords);
+			states=Arrays.copyOf(states,capacity*stateWords);
+			hashes=Arrays.copyOf(hashes,capacity);
+			status=Arrays.copyOf(status,capacity);
+		}
+		int state=count++;
+		System.arraycopy(packed,0,states,state*stateWords,stateWords);
+		hashes[state]=hash;
+		status[state]=0;
+
+		/* Keep the table at most half full */
+		if(count*2>table.length){
+			table=new int[table.length*2];
+			mask=table.length-1;
+			for(int i=0;i<count-1;i++){
+				insert(i);
+			}
+		}
+		insert(state);
+		return state;
+	}
+
+	/* Puts an arena index into the table */
+	private void insert(int state){
+		long hash=hashes[state];
+		int i=(int)(hash>>>32)&mask;
+		while(table[i]!=0){
+			i=(i+1)&mask;
+		}
+		table[i]=state+1;
+	}
+
+	/* Loads the stored configuration with the given arena index into a new grid */
+	CellGrid configuration(int state){
+		CellGrid result=new CellGrid(grid.width,grid.height);
+		result.unpack(states,state*stateWords);
+		return result;
+	}
+
+	/* Program entry point for running an exploration without the GUI */
+	public static void main(String[] args){
+		System.setProperty("java.awt.headless","true");
+		boolean reduce=args.length>0 && args[0].equals("-reduce");
+		if(reduce){
+			args=Arrays.copyOfRange(args,1,args.length);
+		}
+		if(args.length<3 || args.length>5){
+			System.err.println("Usage: java StateExplorer [-reduce] <source.con> <target.con> <automaton> [max configurations] [counterexample.con]");
+			System.exit(1);
+		}
+		try{
+			CellGrid source=ConfigurationFile.load(args[0],null,null);
+			CellGrid target=ConfigurationFile.load(args[1],null,null);
+			if(source.width!=target.width || source.height!=target.height){
+				throw new IllegalArgumentException("configurations are not the same size");
+			}
+			GlobalAttributes.automata=Integer.parseInt(args[2]);
+			if(GlobalAttributes.automata<0 || GlobalAttributes.automata>=Rules.rules.length){
+				throw new IllegalArgumentException("automaton must be between 0 and "+(Rules.rules.length-1));
+			}
+			StateExplorer explorer=new StateExplorer(source,target);
+			explorer.reduce=reduce;
+			if(reduce && !new Frontier(target).isEmpty()){
+				System.out.println("Warning: the target is not a deadlock, so it can never be the end of a path when reducing");
+			}
+			if(args.length>3){
+				explorer.maxStates=Integer.parseInt(args[3]);
+			}
+
+			long start=System.nanoTime();
+			int outcome=explorer.explore();
+			double seconds=(System.nanoTime()-start)/1e9;
+
+			/* Report the outcome and any counterexample */
+			if(outcome==VERIFIED){
+				System.out.println(reduce ? "Verified: every deadlock is the target, and no cycle was found"
+						: "Verified: every path reaches the target");
+			}
+			else if(outcome==DEADLOCK){
+				System.out.println("Deadlock reached after "+explorer.trace.length+" transitions");
+			}
+			else if(outcome==CYCLE){
+				System.out.println("Cycle avoiding the target, entered after "+explorer.cycleStart
+						+" transitions and repeating every "+(explorer.trace.length-explorer.cycleStart));
+			}
+			else{
+				System.out.println("Gave up after "+explorer.count+" configurations");
+			}
+			for(int i=0;i<explorer.trace.length;i++){
+				long cell=explorer.trace[i];
+				System.out.println((i==explorer.cycleStart ? "cycle: " : "")
+						+(cell%source.width)+","+(cell/source.width));
+			}
+			System.out.println("Configurations: "+explorer.count+" in "+String.format("%.3f",seconds)+" s");
+			if(args.length>4 && explorer.last>=0 && outcome!=VERIFIED){
+				ConfigurationFile.save(args[4],explorer.configuration(explorer.last),
+						new Vector<String>(),new Vector<Integer>());
+			}
+		}
+		catch(Exception e){
+			System.err.println("Exploration failed: "+e);
+			System.exit(1);
+		}
+	}
+}
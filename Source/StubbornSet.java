@@ -0,0 +1,170 @@
+/* Chooses stubborn sets of enabled cells, for partial-order reduction of the state-space explorer.
+ * Two transitions are independent (can take place in either order with the same result) unless
+ * their cells are the same or next to each other, as a transition only reads and writes its own
+ * subcells and the facing subcells of its four neighbours. A stubborn set is built from one enabled
+ * cell by repeatedly adding:
+ *  - for an enabled cell, its four neighbours (every transition which does not commute with it);
+ *  - for a disabled cell, the neighbours which must undergo a transition before it can become
+ *    enabled. A neighbour can only change the pair of subcells between it and the cell, so it is
+ *    enough to take a smallest set of directions which includes a changed pair for every enabled
+ *    neighbourhood the cell could change to (cells on the edge never undergo transitions, so
+ *    their pairs never change).
+ * Exploring only the enabled cells of a stubborn set still finds every reachable deadlock */
+public class StubbornSet {
+
+	/* For each STCA, built when first needed: for every neighbourhood and every set of directions
+	 * in which a change is possible, the directions (TOP, BOTTOM, LEFT and RIGHT bits of CellGrid)
+	 * of the neighbours which must undergo a transition before a cell can become enabled */
+	static byte[][] necessary=new byte[Rules.rules.length][];
+
+	/* The grid holding the configuration the sets are chosen in */
+	final CellGrid grid;
+
+	/* Marks the cells in the set being built (those equal to mark), indexed by y*width+x */
+	int[] stamp;
+	int mark=0;
+
+	/* Cells added to the set but not yet looked at */
+	int[] work;
+	int workSize;
+
+	/* Constructor - for configurations held in the given grid */
+	public StubbornSet(CellGrid grid){
+		this.grid=grid;
+		stamp=new int[grid.width*grid.height];
+		work=new int[grid.width*grid.height];
+	}
+
+	/* Reorders the enabled cells cells[from..to-1] (as y*width+x) of the configuration in the grid
+	 * so that those of the smallest stubborn set found come first, and returns how many there are */
+	int choose(long[] cells, int from, int to){
+		int[] table=ApplyRule.compileRules(GlobalAttributes.automata);
+		byte[] needed=necessary(GlobalAttributes.automata);
+
+		/* Build a set from each enabled cell in turn, keeping the one with the fewest enabled cells */
+		long best=cells[from];
+		int bestSize=to-from;
+		for(int i=from;i<to && bestSize>1;i++){
+			int size=build((int)cells[i],bestSize,table,needed);
+			if(size<bestSize){
+				best=cells[i];
+				bestSize=size;
+			}
+		}
+
+		/* Build the best set again, and move its enabled cells to the front */
+		build((int)best,Integer.MAX_VALUE,table,needed);
+		int count=from;
+		for(int i=from;i<to;i++){
+			if(stamp[(int)cells[i]]==mark){
+				long cell=cells[i];
+				cells[i]=cells[count];
+				cells[count++]=cell;
+			}
+		}
+		return count-from;
+	}
+
+	/* Builds the stubborn set starting from the given enabled cell, and returns the number of enabled
+	 * cells in it - stopping early once there are at least limit of them */
+	private int build(int start, int limit, int[] table, byte[] needed){
+		mark++;
+		workSize=0;
+		add(start);
+		int enabled=0;
+		while(workSize>0){
+			int cell=work[--workSize];
+			int x=cell%grid.width;
+			int y=cell/grid.width;
+			int key=ApplyRule.readKey(x,y,grid);
+
+			/* Directions in which the neighbour is not on the edge (and so can undergo a transition) */
+			int possible=(y>1 ? CellGrid.TOP : 0) | (y<grid.height-2 ? CellGrid.BOTTOM : 0)
+					| (x>1 ? CellGrid.LEFT : 0) | (x<grid.width-2 ? CellGrid.RIGHT : 0);
+			int directions;
+			if(table[key]>=0){
+				if(++enabled>=limit){
+					return enabled;
+				}
+				directions=possible;
+			}
+			else{
+				directions=needed[key<<4|possible];
+			}
+			if((directions&CellGrid.TOP)!=0){
+				add(cell-grid.width);
+			}
+			if((directions&CellGrid.BOTTOM)!=0){
+				add(cell+grid.width);
+			}
+			if((directions&CellGrid.LEFT)!=0){
+				add(cell-1);
+			}
+			if((directions&CellGrid.RIGHT)!=0){
+				add(cell+1);
+			}
+		}
+		return enabled;
+	}
+
+	/* Adds a cell to the set being built, if it is not already in it */
+	private void add(int cell){
+		if(stamp[cell]!=mark){
+			stamp[cell]=mark;
+			work[workSize++]=cell;
+		}
+	}
+
+	/* Directions in which the neighbourhoods key1 and key2 differ (a direction differs if either
+	 * subcell of the pair between the cell and that neighbour differs) */
+	static int directions(int key1, int key2){
+		int difference=key1^key2;
+		return (difference|difference>>>4)&0xF;
+	}
+
+	/* Builds (if not already built) and returns the table of necessary directions for the given STCA */
+	static byte[] necessary(int automata){
+		byte[] needed=necessary[automata];
+		if(needed!=null){
+			return needed;
+		}
+		int[] table=ApplyRule.compileRules(automata);
+		needed=new byte[256*16];
+		int[] changes=new int[256];
+		for(int key=0;key<256;key++){
+			for(int possible=0;possible<16;possible++){
+
+				/* Find the sets of directions which would have to change for each enabled
+				 * neighbourhood reachable through changes in the possible directions */
+				int count=0;
+				for(int other=0;other<256;other++){
+					int change=directions(key,other);
+					if(table[other]>=0 && change!=0 && (change&~possible)==0){
+						changes[count++]=change;
+					}
+				}
+
+				/* Take the smallest set of directions including one from each (none if the
+				 * cell can never become enabled) */
+				int best=0;
+				if(count>0){
+					best=possible;
+					for(int set=0;set<16;set++){
+						if((set&~possible)==0 && Integer.bitCount(set)<Integer.bitCount(best)){
+							boolean hits=true;
+							for(int i=0;i<count && hits;i++){
+								hits=(changes[i]&set)!=0;
+							}
+							if(hits){
+								best=set;
+							}
+						}
+					}
+				}
+				needed[key<<4|possible]=(byte)best;
+			}
+		}
+		necessary[automata]=needed;
+		return needed;
+	}
+}
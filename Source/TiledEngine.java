@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Runs transitions on several threads at once, for large cell spaces. The grid is divided into
+ * rectangular tiles, each with its own frontier and random number stream, coloured like a 2x2
+ * checkerboard. The run goes through the four colours in turn (phases), with every tile of the
+ * current colour firing up to PHASE_STEPS transitions (its budget) on whichever thread is free,
+ * and all of them finishing before the next phase starts. Tiles of the same colour are never next
+ * to each other, and a transition only reads and writes its own cell and its four neighbours, so
+ * two transitions in different tiles of a phase never touch the same cell. Tiles are a whole number of words (64 cells)
+ * wide and at least two words wide and two cells high, so they never write to the same word either.
+ * Doing transitions in this order is one of the orders allowed by the asynchronous model, so the
+ * STCA behaves exactly as in CellSpace.
+ *
+ * A transition in a cell on the edge of a tile changes a subcell of the cell next to it in the
+ * neighbouring tile, which can change whether that cell is enabled. The neighbouring tile is marked
+ * as stale, and re-checks the cells around its edges at the start of its next phase.
+ *
+ * When running a given number of transitions, the transitions still to do are shared out between
+ * the tiles of each phase as their budgets, so a run never goes past that number.
+ *
+ * As the tiles, their streams and their budgets are fixed and tiles of a phase do not affect each
+ * other, the results for a given seed are the same however many threads are used */
+public class TiledEngine {
+
+	/* Default tile size, in cells */
+	static final int TILE_WIDTH=128;
+	static final int TILE_HEIGHT=64;
+
+	/* Most transitions each tile fires in one phase */
+	static final int PHASE_STEPS=4096;
+
+	/* The cell space the engine runs */
+	final CellGrid grid;
+
+	/* Tiles, row by row, and the number of them across and down the grid */
+	final Tile[] tiles;
+	final int across;
+	final int down;
+
+	/* STCA the tiles' frontiers were last built for */
+	int automata;
+
+	/* Set to end a run early (at the end of the current phase) */
+	volatile boolean stopped=false;
+
+	/* A rectangle of the grid and its frontier */
+	static class Tile implements Callable<Long> {
+
+		/* Frontier of the cells in the tile */
+		final Frontier frontier;
+
+		/* Stream choosing the tile's transitions */
+		final SplittableRandom random;
+
+		/* Neighbouring tiles (null at the edges of the grid) */
+		Tile above;
+		Tile below;
+		Tile leftOf;
+		Tile rightOf;
+
+		/* Set when a neighbouring tile has changed cells on the tile's edges */
+		boolean stale=false;
+
+		/* Most transitions to fire in the current phase */
+		int budget=PHASE_STEPS;
+
+		/* Constructor - for the given region of the grid */
+		Tile(CellGrid grid, int x0, int y0, int x1, int y1, SplittableRandom random){
+			frontier=new Frontier(grid,x0,y0,x1,y1);
+			this.random=random;
+		}
+
+		/* Fires up to budget transitions in the tile, and returns the number fired */
+		@Override
+		public Long call(){
+			if(stale){
+				frontier.updateEdges();
+				stale=false;
+			}
+			CellGrid grid=frontier.grid;
+			long fired=0;
+			while(fired<budget){
+				long cell=frontier.fire(random);
+				if(cell<0){
+					break;
+				}
+				fired++;
+
+				/* Tell the neighbours when a cell on the tile's edge has changed their cells */
+				int x=(int)(cell%grid.width);
+				int y=(int)(cell/grid.width);
+				if(y==frontier.y0 && above!=null){
+					above.stale=true;
+				}
+				if(y==frontier.y1-1 && below!=null){
+					below.stale=true;
+				}
+				if(x==frontier.x0 && leftOf!=null){
+					leftOf.stale=true;
+				}
+				if(x==frontier.x1-1 && rightOf!=null){
+					rightOf.stale=true;
+				}
+			}
+			return fired;
+		}
+	}
+
+	/* Constructor - with tiles of the default size */
+	public TiledEngine(CellGrid grid, SplittableRandom master){
+		this(grid,TILE_WIDTH,TILE_HEIGHT,master);
+	}
+
+	/* Constructor - divides the grid into tiles of the given size (the width a multiple of 64 and
+	 * at least 128, the height at least 2), each with a stream split (in row order) from master */
+	public TiledEngine(CellGrid grid, int tileWidth, int tileHeight, SplittableRandom master){
+		if(tileWidth<128 || (tileWidth&63)!=0 || tileHeight<2){
+			throw new IllegalArgumentException("tiles must be a multiple of 64 (and at least 128) cells wide and at least 2 high");
+		}
+		this.grid=grid;
+		automata=GlobalAttributes.automata;
+		prepare(automata);
+		across=(grid.width+tileWidth-1)/tileWidth;
+		down=(grid.height+tileHeight-1)/tileHeight;
+		tiles=new Tile[across*down];
+		for(int ty=0;ty<down;ty++){
+			for(int tx=0;tx<across;tx++){
+				tiles[ty*across+tx]=new Tile(grid,tx*tileWidth,ty*tileHeight,Math.min((tx+1)*tileWidth,grid.width),
+						Math.min((ty+1)*tileHeight,grid.height),master.split());
+			}
+		}
+		for(int ty=0;ty<down;ty++){
+			for(int tx=0;tx<across;tx++){
+				Tile tile=tiles[ty*across+tx];
+				tile.above=ty>0 ? tiles[(ty-1)*across+tx] : null;
+				tile.below=ty<down-1 ? tiles[(ty+1)*across+tx] : null;
+				tile.leftOf=tx>0 ? tiles[ty*across+tx-1] : null;
+				tile.rightOf=tx<across-1 ? tiles[ty*across+tx+1] : null;
+			}
+		}
+	}
+
+	/* Builds the tables the workers share for the given STCA, before any worker can ask for them */
+	private static void prepare(int automata){
+		ApplyRule.compileRules(automata);
+		BitslicedMatcher.enabledPairs(automata);
+	}
+
+	/* Runs the given number of transitions (fewer if no transition can take place before then), or
+	 * if transitions is negative, until no transition can take place, on the given number of
+	 * threads. Returns the number of transitions fired */
+	long run(long transitions, int threads) throws InterruptedException{
+
+		/* Rebuild the frontiers if the STCA has been changed */
+		if(automata!=GlobalAttributes.automata){
+			automata=GlobalAttributes.automata;
+			prepare(automata);
+			for(Tile tile : tiles){
+				tile.frontier.rebuild();
+			}
+		}
+
+		ExecutorService workers=Executors.newFixedThreadPool(threads);
+		List<Tile> phase=new ArrayList<Tile>();
+		long done=0;
+		try{
+			boolean active=true;
+			while(active && !stopped && (transitions<0 || done<transitions)){
+
+				/* Quiescent once a whole round of phases fires nothing (with every tile which may
+				 * have work given some budget) */
+				active=false;
+				for(int colour=0;colour<4 && !stopped && (transitions<0 || done<transitions);colour++){
+					phase.clear();
+					for(int ty=colour>>1;ty<down;ty+=2){
+						for(int tx=colour&1;tx<across;tx+=2){
+							Tile tile=tiles[ty*across+tx];
+							if(tile.stale || !tile.frontier.isEmpty()){
+								phase.add(tile);
+							}
+						}
+					}
+
+					/* Share out the transitions still to do, the first tiles taking one more
+					 * if they do not divide evenly, leaving out tiles with no budget */
+					if(transitions>=0 && !phase.isEmpty()){
+						long share=(transitions-done)/phase.size();
+						long extra=(transitions-done)%phase.size();
+						for(int i=phase.size()-1;i>=0;i--){
+							Tile tile=phase.get(i);
+							tile.budget=(int)Math.min(PHASE_STEPS,share+(i<extra ? 1 : 0));
+							if(tile.budget==0){
+								phase.remove(i);
+								active=true;
+							}
+						}
+					}
+					for(Future<Long> fired : workers.invokeAll(phase)){
+						long count=fired.get();
+						done+=count;
+						active|=count>0;
+					}
+				}
+			}
+		}
+		catch(ExecutionException e){
+			throw new IllegalStateException(e.getCause());
+		}
+		finally{
+			workers.shutdownNow();
+
+			/* Bring every frontier up to date, and work out the hash again as tiles updated it
+			 * at the same time */
+			for(Tile tile : tiles){
+				if(tile.stale){
+					tile.frontier.updateEdges();
+					tile.stale=false;
+				}
+			}
+			grid.rehash();
+		}
+		return done;
+	}
+
+	/* Ends a run early */
+	void stop(){
+		stopped=true;
+	}
+
+	/* Number of enabled cells in the whole grid */
+	long enabledCount(){
+		long count=0;
+		for(Tile tile : tiles){
+			count+=tile.frontier.size;
+		}
+		return count;
+	}
+
+	/* True if no transition can take place anywhere in the grid */
+	boolean isQuiescent(){
+		return enabledCount()==0;
+	}
+}
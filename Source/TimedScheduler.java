@@ -0,0 +1,190 @@
+import java.util.SplittableRandom;
+
+/* Runs a cell space in continuous (simulated) time, for testing circuits under varied delays. Each
+ * enabled cell is given a random delay from the RateMap when it becomes enabled, and the cell whose
+ * time comes first undergoes the next transition (the next reaction form of Gillespie's method).
+ * A cell keeps its time while it stays enabled, and loses it when it is disabled. The enabled cells
+ * are held in a binary heap ordered by time, with the position of each cell in the heap kept in a
+ * map so that any cell can be removed or added in logarithmic time. As with the frontier, after a
+ * transition only the fired cell and its four neighbours are checked again */
+public class TimedScheduler {
+
+	/* The cell space being run, and the rates of its cells */
+	final CellGrid grid;
+	final RateMap rates;
+
+	/* STCA the heap was last built for */
+	int automata;
+
+	/* Simulated time of the last transition, and the number of transitions so far */
+	double time=0;
+	long steps=0;
+
+	/* Heap of the enabled cells (as y*width+x) and their times - the earliest at position 0, and
+	 * each position's times no later than those at twice the position plus one and two */
+	long[] cells;
+	double[] times;
+	int size;
+
+	/* Position of each enabled cell in the heap */
+	LongIntMap positions;
+
+	/* Bit for each enabled cell (indexed as the grid's bitplanes), used when rebuilding */
+	long[] enabled;
+
+	/* Constructor - schedules the enabled cells of the given grid for the current STCA, from time 0 */
+	public TimedScheduler(CellGrid grid, RateMap rates, SplittableRandom random){
+		this.grid=grid;
+		this.rates=rates;
+		cells=new long[64];
+		times=new double[64];
+		positions=new LongIntMap(64);
+		enabled=new long[grid.top.length];
+		rebuild(random);
+	}
+
+	/* Checks every interior cell of the grid again, for the current STCA, giving every enabled
+	 * cell a new time. Needed whenever the grid or the STCA changes other than by transitions
+	 * reported to update */
+	void rebuild(SplittableRandom random){
+		automata=GlobalAttributes.automata;
+		size=0;
+		positions.clear();
+		BitslicedMatcher.findEnabled(grid,automata,enabled);
+		for(int i=0;i<enabled.length;i++){
+			long bits=enabled[i];
+			while(bits!=0){
+				int x=((i%grid.wordsPerRow)<<6)+Long.numberOfTrailingZeros(bits);
+				long cell=(long)(i/grid.wordsPerRow)*grid.width+x;
+				add(cell,time+rates.delay(cell,random));
+				bits&=bits-1;
+			}
+		}
+	}
+
+	/* Applies the transition of the enabled cell with the earliest time, advancing the simulated
+	 * time to it. Returns the index of the fired cell (y*width+x), or -1 if no cell will ever
+	 * undergo a transition */
+	long fire(SplittableRandom random){
+		if(size==0 || times[0]==Double.POSITIVE_INFINITY){
+			return -1;
+		}
+		long cell=cells[0];
+		time=times[0];
+		remove(cell);
+		int x=(int)(cell%grid.width);
+		int y=(int)(cell/grid.width);
+		ApplyRule.executeTransition(x,y,grid);
+		update(x,y,random);
+		steps++;
+		return cell;
+	}
+
+	/* Re-checks the cell x,y and its four neighbours, after a change to the cell's subcells */
+	void update(int x, int y, SplittableRandom random){
+		check(x,y,random);
+		check(x,y-1,random);
+		check(x,y+1,random);
+		check(x-1,y,random);
+		check(x+1,y,random);
+	}
+
+	/* Adds the cell x,y to (with a new time) or removes it from the heap, depending on whether
+	 * it is enabled */
+	private void check(int x, int y, SplittableRandom random){
+		if(x>0 && x<grid.width-1 && y>0 && y<grid.height-1){
+			long cell=(long)y*grid.width+x;
+			boolean enabled=ApplyRule.isEnabled(x,y,grid);
+			if(enabled && positions.get(cell)<0){
+				add(cell,time+rates.delay(cell,random));
+			}
+			else if(!enabled && positions.get(cell)>=0){
+				remove(cell);
+			}
+		}
+	}
+
+	/* Number of enabled cells */
+	int enabledCount(){
+		return size;
+	}
+
+	/* Adds a cell which is not in the heap, with the given time */
+	private void add(long cell, double when){
+		if(size==cells.length){
+			long[] largerCells=new long[cells.length*2];
+			double[] largerTimes=new double[times.length*2];
+			System.arraycopy(cells,0,largerCells,0,size);
+			System.arraycopy(times,0,largerTimes,0,size);
+			cells=largerCells;
+			times=largerTimes;
+		}
+		siftUp(size++,cell,when);
+	}
+
+	/* Removes a cell which is in the heap, filling its place with the last cell */
+	private void remove(long cell){
+		int position=positions.get(cell);
+		positions.remove(cell);
+		size--;
+		if(position==size){
+			return;
+		}
+		long last=cells[size];
+		double when=times[size];
+		if(position>0 && when<times[(position-1)>>>1]){
+			siftUp(position,last,when);
+		}
+		else{
+			siftDown(position,last,when);
+		}
+	}
+
+	/* Places a cell at the given empty position, moving it towards the top while its time is
+	 * earlier than its parent's */
+	private void siftUp(int position, long cell, double when){
+		while(position>0){
+			int parent=(position-1)>>>1;
+			if(times[parent]<=when){
+				break;
+			}
+			move(parent,position);
+			position=parent;
+		}
+		place(position,cell,when);
+	}
+
+	/* Places a cell at the given empty position, moving it towards the bottom while its time is
+	 * later than its earlier child's */
+	private void siftDown(int position, long cell, double when){
+		while(true){
+			int child=2*position+1;
+			if(child>=size){
+				break;
+			}
+			if(child+1<size && times[child+1]<times[child]){
+				child++;
+			}
+			if(when<=times[child]){
+				break;
+			}
+			move(child,position);
+			position=child;
+		}
+		place(position,cell,when);
+	}
+
+	/* Moves the cell at position from to position to */
+	private void move(int from, int to){
+		cells[to]=cells[from];
+		times[to]=times[from];
+		positions.put(cells[to],to);
+	}
+
+	/* Puts a cell and its time at the given position */
+	private void place(int position, long cell, double when){
+		cells[position]=cell;
+		times[position]=when;
+		positions.put(cell,position);
+	}
+}
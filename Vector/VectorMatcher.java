@@ -0,0 +1,131 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/* Vector API version of BitslicedMatcher.findEnabled, which evaluates as many row words at once as
+ * the processor's widest vectors hold (e.g. 4 words, 256 cells, with AVX2, or 8 words with AVX-512)
+ * instead of one. Words at the ends of each row, where the neighbouring word belongs to another
+ * row, are done one at a time as before.
+ *
+ * It is kept out of the Source directory because it needs the incubating Vector API module. To use
+ * it, compile it with the rest of the program and run with the module added:
+ *
+ *   javac --add-modules jdk.incubator.vector Source/*.java Vector/*.java
+ *   java --add-modules jdk.incubator.vector Launch
+ *
+ * BitslicedMatcher loads it if it is present and works, and otherwise uses its own version */
+public class VectorMatcher implements EnabledFinder {
+
+	/* Vector shape used - the widest the processor supports */
+	static final VectorSpecies<Long> SPECIES=LongVector.SPECIES_PREFERRED;
+
+	@Override
+	public void findEnabled(CellGrid grid, int automata, long[] enabled){
+		short[] pairs=BitslicedMatcher.enabledPairs(automata);
+		int perRow=grid.wordsPerRow;
+		int lanes=SPECIES.length();
+		long[] own=new long[16];
+		long[] facing=new long[16];
+		long[] work=new long[32*lanes];
+		BitslicedMatcher.clearEdgeRows(grid,enabled);
+		for(int y=1;y<grid.height-1;y++){
+			int row=y*perRow;
+
+			/* The first word of the row has no word to its left */
+			enabled[row]=BitslicedMatcher.matchWord(grid,pairs,y,0,own,facing);
+
+			/* Whole vectors of words, while the word after the last one is still in the row
+			 * (so every bit of these words is an interior cell) */
+			int w=1;
+			for(;w+lanes<perRow;w+=lanes){
+				int i=row+w;
+
+				/* The combinations of each pair of the cell's own subcells (top and bottom, left and right) */
+				LongVector top=LongVector.fromArray(SPECIES,grid.top,i);
+				LongVector bottom=LongVector.fromArray(SPECIES,grid.bottom,i);
+				LongVector left=LongVector.fromArray(SPECIES,grid.left,i);
+				LongVector right=LongVector.fromArray(SPECIES,grid.right,i);
+				LongVector t0=top.or(bottom).not();
+				LongVector t1=bottom.and(top.not());
+				LongVector t2=top.and(bottom.not());
+				LongVector t3=top.and(bottom);
+				LongVector l0=left.or(right).not();
+				LongVector l1=right.and(left.not());
+				LongVector l2=left.and(right.not());
+				LongVector l3=left.and(right);
+
+				/* And of the facing subcells of its neighbours (above and below, left and right) */
+				LongVector above=LongVector.fromArray(SPECIES,grid.bottom,i-perRow);
+				LongVector below=LongVector.fromArray(SPECIES,grid.top,i+perRow);
+				LongVector leftNeighbour=right.lanewise(VectorOperators.LSHL,1)
+						.or(LongVector.fromArray(SPECIES,grid.right,i-1).lanewise(VectorOperators.LSHR,63));
+				LongVector rightNeighbour=left.lanewise(VectorOperators.LSHR,1)
+						.or(LongVector.fromArray(SPECIES,grid.left,i+1).lanewise(VectorOperators.LSHL,63));
+				LongVector n0=above.or(below).not();
+				LongVector n1=below.and(above.not());
+				LongVector n2=above.and(below.not());
+				LongVector n3=above.and(below);
+				LongVector m0=leftNeighbour.or(rightNeighbour).not();
+				LongVector m1=rightNeighbour.and(leftNeighbour.not());
+				LongVector m2=leftNeighbour.and(rightNeighbour.not());
+				LongVector m3=leftNeighbour.and(rightNeighbour);
+
+				/* Store the 16 combinations of the facing subcells and the 16 of the cell's own, so
+				 * they can be picked out by number (a plain long array rather than an array of vectors,
+				 * which would stop the vectors being kept in registers) */
+				n0.and(m0).intoArray(work,0);
+				n0.and(m1).intoArray(work,lanes);
+				n0.and(m2).intoArray(work,2*lanes);
+				n0.and(m3).intoArray(work,3*lanes);
+				n1.and(m0).intoArray(work,4*lanes);
+				n1.and(m1).intoArray(work,5*lanes);
+				n1.and(m2).intoArray(work,6*lanes);
+				n1.and(m3).intoArray(work,7*lanes);
+				n2.and(m0).intoArray(work,8*lanes);
+				n2.and(m1).intoArray(work,9*lanes);
+				n2.and(m2).intoArray(work,10*lanes);
+				n2.and(m3).intoArray(work,11*lanes);
+				n3.and(m0).intoArray(work,12*lanes);
+				n3.and(m1).intoArray(work,13*lanes);
+				n3.and(m2).intoArray(work,14*lanes);
+				n3.and(m3).intoArray(work,15*lanes);
+				t0.and(l0).intoArray(work,16*lanes);
+				t0.and(l1).intoArray(work,17*lanes);
+				t0.and(l2).intoArray(work,18*lanes);
+				t0.and(l3).intoArray(work,19*lanes);
+				t1.and(l0).intoArray(work,20*lanes);
+				t1.and(l1).intoArray(work,21*lanes);
+				t1.and(l2).intoArray(work,22*lanes);
+				t1.and(l3).intoArray(work,23*lanes);
+				t2.and(l0).intoArray(work,24*lanes);
+				t2.and(l1).intoArray(work,25*lanes);
+				t2.and(l2).intoArray(work,26*lanes);
+				t2.and(l3).intoArray(work,27*lanes);
+				t3.and(l0).intoArray(work,28*lanes);
+				t3.and(l1).intoArray(work,29*lanes);
+				t3.and(l2).intoArray(work,30*lanes);
+				t3.and(l3).intoArray(work,31*lanes);
+
+				/* Cells which are in an enabled neighbourhood */
+				LongVector result=LongVector.zero(SPECIES);
+				for(int a=0;a<16;a++){
+					int set=pairs[a]&0xFFFF;
+					if(set!=0){
+						LongVector matches=LongVector.zero(SPECIES);
+						while(set!=0){
+							matches=matches.or(LongVector.fromArray(SPECIES,work,Integer.numberOfTrailingZeros(set)*lanes));
+							set&=set-1;
+						}
+						result=result.or(LongVector.fromArray(SPECIES,work,(16+a)*lanes).and(matches));
+					}
+				}
+				result.intoArray(enabled,i);
+			}
+
+			/* The remaining words, one at a time */
+			for(;w<perRow;w++){
+				enabled[row+w]=BitslicedMatcher.matchWord(grid,pairs,y,w,own,facing);
+			}
+		}
+	}
+}